@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 
 import javax.annotation.PostConstruct;
@@ -14,6 +15,7 @@ import java.util.TimeZone;
 @EnableSpringDataWebSupport
 @EnableJpaRepositories
 @EnableGlobalMethodSecurity(prePostEnabled = true)
+@EnableScheduling
 @SpringBootApplication
 public class MarketplaceApplication {
 
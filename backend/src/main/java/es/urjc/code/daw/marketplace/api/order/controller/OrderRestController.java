@@ -5,6 +5,7 @@ import es.urjc.code.daw.marketplace.api.jwt.dto.ValidateTokenResponseDto;
 import es.urjc.code.daw.marketplace.api.order.dto.*;
 import es.urjc.code.daw.marketplace.api.order.mapper.RestOrderMapper;
 import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.OrderView;
 import es.urjc.code.daw.marketplace.domain.Product;
 import es.urjc.code.daw.marketplace.domain.User;
 import es.urjc.code.daw.marketplace.service.AuthenticationService;
@@ -18,23 +19,26 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletResponse;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @CrossOrigin("*")
 @RestController
 public class OrderRestController {
 
     private static final String BASE_ROUTE = "/api/orders";
+    private static final int MAX_BULK_ORDERS = 1000;
 
     private final OrderService orderService;
     private final ProductService productService;
@@ -43,6 +47,8 @@ public class OrderRestController {
     private final RestOrderMapper restOrderMapper;
     private final PdfExporterService pdfExporterService;
     private final AuthenticationService authenticationService;
+    private final OrderExportService orderExportService;
+    private final ProductPriceService productPriceService;
 
     public OrderRestController(OrderService orderService,
                                ProductService productService,
@@ -50,7 +56,9 @@ public class OrderRestController {
                                EmailService emailService,
                                RestOrderMapper restOrderMapper,
                                PdfExporterService pdfExporterService,
-                               AuthenticationService authenticationService) {
+                               AuthenticationService authenticationService,
+                               OrderExportService orderExportService,
+                               ProductPriceService productPriceService) {
         this.orderService = orderService;
         this.productService = productService;
         this.saleService = saleService;
@@ -58,6 +66,8 @@ public class OrderRestController {
         this.restOrderMapper = restOrderMapper;
         this.pdfExporterService = pdfExporterService;
         this.authenticationService = authenticationService;
+        this.orderExportService = orderExportService;
+        this.productPriceService = productPriceService;
     }
 
     @Operation(summary = "Finds the logged in user paginated orders")
@@ -102,7 +112,7 @@ public class OrderRestController {
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
         }
-        List<Order> orders = orderService.findAllOrdersByUserId(loggedUser.getId(), PageRequest.of(page - 1, amount));
+        List<OrderView> orders = orderService.findOrderViewsByUserId(loggedUser.getId(), PageRequest.of(page - 1, amount));
         // If no orders are found we return the appropriate response code
         if (orders.isEmpty()) {
             final String message = "There are no orders to be returned (order list is empty)";
@@ -155,9 +165,8 @@ public class OrderRestController {
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
         }
-        List<Order> orders = orderService.findAllOrdersByUserId(loggedUser.getId());
         // Ensure that the order belongs to the logged user (or is an admin)
-        boolean accessPermitted = loggedUser.isAdmin() || orders.contains(order);
+        boolean accessPermitted = loggedUser.isAdmin() || order.getUser().equals(loggedUser);
         // If the user is trying to access another user's order without authorization return unauthorized
         if(!accessPermitted) {
             final String message = "You have no permission to perform this operation (only the order owner or the admin)";
@@ -225,15 +234,16 @@ public class OrderRestController {
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
         }
-        // Build the order
+        // Build the order, priced as of its creation
+        Date now = TimeUtils.now();
         Order order = Order.builder()
                 .product(product)
-                .finalCost(product.getPrice())
+                .finalCost(productPriceService.priceAt(product, now))
                 .user(loggedUser)
+                .creationDate(now)
                 .build();
         // Apply discounts if available
-        saleService.applyOtdDiscount(order);
-        saleService.applyAdDiscount(order);
+        saleService.applyDiscounts(order);
         // Save the order
         Order savedOrder = orderService.saveOrder(order);
         // Send an email with the service receipt
@@ -308,25 +318,149 @@ public class OrderRestController {
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
         }
+        // Renewals and cancellations are atomic updates computed by the database (no lost concurrent renewals)
+        List<Order> updated;
         if(request.shouldCancel()) {
             // Set the expiration to now's date (expires the order immediately)
-            order.setExpiryDate(TimeUtils.now());
-            orderService.saveOrder(order);
+            updated = orderService.cancelOrders(List.of(orderId), null);
+        } else if(request.shouldRenew()) {
+            // Add the price of the renewal and extend the expiry date (from now if it already expired)
+            updated = orderService.renewOrders(List.of(orderId), null, request.getMonthsRenewed());
+        } else {
+            final String message = "No valid operation was specified in the request";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // The order may have been deleted or archived since it was found
+        if(updated.isEmpty()) {
+            final String message = "There is no order associated to the provided order id";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+        FindOrderResponseDto content = restOrderMapper.asFindResponse(updated.get(0));
+        RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Exports all the orders (admin only) as a stream of ndjson or csv rows")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "The orders are streamed in the requested format",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "The requested export format is not supported",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester is not authorized to perform this operation",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/export",
+            method = RequestMethod.GET
+    )
+    public ResponseEntity<?> exportOrders(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                          @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") Date from,
+                                          @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") Date to,
+                                          @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        // Obtain the currently logged in user (if not logged in an exception is thrown)
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the user that requests the export is an admin
+        if(!loggedUser.isAdmin()) {
+            final String message = "You have no permission to perform this operation (only the admin)";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            final String message = "The export format must be either ndjson or csv";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // The rows are written to the response as they are read from the database cursor
+        StreamingResponseBody body = outputStream -> {
+            if(gzip) {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 64 * 1024);
+                orderExportService.exportOrders(gzipOutputStream, exportFormat, from, to);
+                gzipOutputStream.finish();
+            } else {
+                orderExportService.exportOrders(outputStream, exportFormat, from, to);
+            }
+        };
+        String filename = "orders." + format.toLowerCase() + (gzip ? ".gz" : "");
+        MediaType mediaType = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : exportFormat == OrderExportService.Format.CSV ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson");
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header("Content-Disposition", "attachment; filename=" + filename)
+                .body(body);
+    }
+
+    @Operation(summary = "Renews or cancels a set of orders at once")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "The orders have been successfully updated",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Some invalid details where provided that prevented the operation completion",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester is not authorized to perform this operation",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/bulk",
+            method = RequestMethod.PUT
+    )
+    public ResponseEntity<RestResponseDto> bulkUpdateOrders(@RequestBody BulkUpdateOrderRequestDto request) {
+        // Obtain the currently logged in user (if not logged in an exception is thrown)
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure that some order ids were provided (and not too many of them)
+        if(request.getOrderIds() == null || request.getOrderIds().isEmpty() || request.getOrderIds().size() > MAX_BULK_ORDERS) {
+            final String message = "You must provide between 1 and " + MAX_BULK_ORDERS + " order ids to be updated";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // Non admin users may only update the orders they own (the rest are silently skipped)
+        Long ownerId = loggedUser.isAdmin() ? null : loggedUser.getId();
+        List<Order> orders;
+        if(request.shouldCancel()) {
+            orders = orderService.cancelOrders(request.getOrderIds(), ownerId);
         } else if(request.shouldRenew()) {
-            // Add the price of the current renewal (total = accumulated_price + (product_monthly_price * months_renewed))
-            order.setFinalCost(order.getFinalCost() + order.getProduct().getPrice() * request.getMonthsRenewed());
-            // Change the expiry date to one month later
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(new Date().after(order.getExpiryDate()) ? new Date() : order.getExpiryDate());
-            calendar.add(Calendar.MONTH, request.getMonthsRenewed());
-            order.setExpiryDate(calendar.getTime());
-            orderService.saveOrder(order);
+            orders = orderService.renewOrders(request.getOrderIds(), ownerId, request.getMonthsRenewed());
         } else {
             final String message = "No valid operation was specified in the request";
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
         }
-        FindOrderResponseDto content = restOrderMapper.asFindResponse(orderService.findOrderById(orderId));
+        BulkUpdateOrderResponseDto content = BulkUpdateOrderResponseDto.builder()
+                .updated(orders.size())
+                .orders(orders.stream().map(restOrderMapper::asFindResponse).collect(Collectors.toList()))
+            .build();
         RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
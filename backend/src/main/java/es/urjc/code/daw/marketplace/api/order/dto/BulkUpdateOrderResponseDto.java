@@ -0,0 +1,21 @@
+package es.urjc.code.daw.marketplace.api.order.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkUpdateOrderResponseDto {
+
+    @JsonProperty("updated")
+    private Integer updated;
+
+    @JsonProperty("orders")
+    private List<FindOrderResponseDto> orders;
+
+}
@@ -2,6 +2,7 @@ package es.urjc.code.daw.marketplace.api.order.mapper;
 
 import es.urjc.code.daw.marketplace.api.order.dto.FindOrderResponseDto;
 import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.OrderView;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
@@ -21,4 +22,9 @@ public interface RestOrderMapper {
     @Mapping(target = "transfer", source = "product.transfer")
     FindOrderResponseDto asFindResponse(Order order);
 
+    @Mapping(target = "purchase", source = "creationDate")
+    @Mapping(target = "expiration", source = "expiryDate")
+    @Mapping(target = "isExpired", ignore = true)
+    FindOrderResponseDto asFindResponse(OrderView orderView);
+
 }
@@ -1,24 +1,34 @@
 package es.urjc.code.daw.marketplace.api.product.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
 import es.urjc.code.daw.marketplace.api.common.RestResponseDto;
 import es.urjc.code.daw.marketplace.api.product.dto.FindProductResponseDto;
+import es.urjc.code.daw.marketplace.api.product.dto.ImportProductsResponseDto;
 import es.urjc.code.daw.marketplace.api.product.mapper.RestProductMapper;
-import es.urjc.code.daw.marketplace.domain.Product;
-import es.urjc.code.daw.marketplace.service.ProductService;
+import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.service.*;
+import es.urjc.code.daw.marketplace.util.HardwareSpecs;
 import io.swagger.v3.oas.annotations.Operation;
-import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
-import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.CrossOrigin;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @CrossOrigin("*")
@@ -26,25 +36,48 @@ import java.util.stream.Collectors;
 public class ProductRestController {
 
     private static final String BASE_ROUTE = "/api/products";
+    private static final int DEFAULT_RELATED_PRODUCTS = 5;
+    private static final int MAX_RELATED_PRODUCTS = 20;
 
     private final ProductService productService;
     private final RestProductMapper restProductMapper;
+    private final ObjectMapper objectMapper;
+    private final RelatedProductService relatedProductService;
+    private final ProductImportService productImportService;
+    private final AuthenticationService authenticationService;
 
-    public ProductRestController(ProductService productService, RestProductMapper restProductMapper) {
+    // The catalog response, mapped and serialized once per catalog version
+    private volatile SerializedCatalog serializedCatalog;
+
+    public ProductRestController(ProductService productService,
+                                 RestProductMapper restProductMapper,
+                                 ObjectMapper objectMapper,
+                                 RelatedProductService relatedProductService,
+                                 ProductImportService productImportService,
+                                 AuthenticationService authenticationService) {
         this.productService = productService;
         this.restProductMapper = restProductMapper;
+        this.objectMapper = objectMapper;
+        this.relatedProductService = relatedProductService;
+        this.productImportService = productImportService;
+        this.authenticationService = authenticationService;
     }
 
-    @Operation(summary = "Finds a list of all products")
+    @Operation(summary = "Finds a list of all products, optionally filtered by category, minimum ram and cores and maximum price, and sorted (id, price, ram or cores, prefixed with - for descending)")
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
                     description = "The list of products was found successfully",
                     content = @Content
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "The list of products has not changed since the given entity tag",
+                    content = @Content
+            ),
             @ApiResponse(
                     responseCode = "400",
-                    description = "Can not access to find products",
+                    description = "Can not access to find products or the given filters are not valid",
                     content = @Content
             ),
 
@@ -59,20 +92,219 @@ public class ProductRestController {
             path = BASE_ROUTE,
             method = RequestMethod.GET
     )
-    public ResponseEntity<RestResponseDto> findAllProducts() {
-        // Find all the available products
-        List<Product> products = productService.findAllProducts();
+    public ResponseEntity<?> findAllProducts(@RequestParam(value = "category", required = false) String category,
+                                             @RequestParam(value = "minRam", required = false) String minRam,
+                                             @RequestParam(value = "maxPrice", required = false) Integer maxPrice,
+                                             @RequestParam(value = "minCores", required = false) Integer minCores,
+                                             @RequestParam(value = "sort", required = false) String sort,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws JsonProcessingException {
+        // Filtered or sorted listings are answered from the in-memory product index
+        if(category != null || minRam != null || maxPrice != null || minCores != null || sort != null) {
+            ProductQuery query;
+            try {
+                query = asQuery(category, minRam, maxPrice, minCores, sort);
+            } catch(IllegalArgumentException exception) {
+                final String message = "The given product filters are not valid: " + exception.getLocalizedMessage();
+                RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+            }
+            List<FindProductResponseDto> content = productService.searchProducts(query).stream()
+                    .map(restProductMapper::asFindResponse)
+                    .collect(Collectors.toList());
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+        // Find the current catalog snapshot
+        ProductCatalog catalog = productService.getCatalog();
         // If there are no products return the appropriate response
-        if(products.isEmpty()) {
+        if(catalog.isEmpty()) {
             final String message = "There are no products to be returned (product list is empty)";
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
         }
-        // All the found products map them to DTO's
-        List<FindProductResponseDto> content = products.stream().map(restProductMapper::asFindResponse).collect(Collectors.toList());
-        // Send the successful response with all the DTO products
+        SerializedCatalog serialized = serialize(catalog);
+        // The client already holds the current catalog
+        if(matches(ifNoneMatch, serialized.etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(serialized.etag)
+                    .cacheControl(CacheControl.noCache())
+                .build();
+        }
+        // Send the successful response with the pre-serialized DTO products
+        return ResponseEntity.ok()
+                .eTag(serialized.etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+            .body(serialized.body.clone());
+    }
+
+    @Operation(summary = "Finds the products most often bought by the customers who bought the given product")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "The list of related products was found successfully",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "The given limit is not valid",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "The product does not exist",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/{id}/related",
+            method = RequestMethod.GET
+    )
+    public ResponseEntity<RestResponseDto> findRelatedProducts(@PathVariable("id") Long productId,
+                                                               @RequestParam(value = "limit", required = false) Integer limit) {
+        // Ensure the limit is within bounds
+        int relatedLimit = limit != null ? limit : DEFAULT_RELATED_PRODUCTS;
+        if(relatedLimit < 1 || relatedLimit > MAX_RELATED_PRODUCTS) {
+            final String message = String.format("The limit must be between 1 and %d", MAX_RELATED_PRODUCTS);
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // Ensure the product exists
+        ProductCatalog catalog = productService.getCatalog();
+        if(catalog.getProduct(productId).isEmpty()) {
+            final String message = "There is no product with the given id";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+        // Map the related product ids to the catalog products (skipping the no longer existing ones)
+        List<FindProductResponseDto> content = relatedProductService.findRelatedProductIds(productId, relatedLimit).stream()
+                .map(catalog::getProduct)
+                .flatMap(Optional::stream)
+                .map(restProductMapper::asFindResponse)
+                .collect(Collectors.toList());
+        // Return a successful response
+        RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Inserts or updates the products of the request body (one per line, as NDJSON or CSV with a header), only if all of them are valid")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "The products were imported successfully",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "The import format is not supported or some rows are not valid (nothing was imported)",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester is not authorized to perform this operation",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/import",
+            method = RequestMethod.POST
+    )
+    public ResponseEntity<RestResponseDto> importProducts(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                          HttpServletRequest request) throws IOException {
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the user that imports the products is an admin
+        if(!loggedUser.isAdmin()) {
+            final String message = "You have no permission to perform this operation (only the admin)";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the import format is supported
+        ProductImportService.Format importFormat;
+        try {
+            importFormat = ProductImportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch(IllegalArgumentException exception) {
+            final String message = "The import format must be either ndjson or csv";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // Import the rows while the body is being read
+        ProductImportResult result;
+        try(Reader reader = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+            result = productImportService.importProducts(reader, importFormat);
+        }
+        ImportProductsResponseDto content = ImportProductsResponseDto.builder()
+                .insertedProducts(result.getInsertedProducts())
+                .updatedProducts(result.getUpdatedProducts())
+                .errors(result.getErrors())
+                .elapsedMillis(result.getElapsedMillis())
+            .build();
+        // If some row was rejected nothing was imported
+        if(!result.isApplied()) {
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(content).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // Return a successful response
         RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    private static ProductQuery asQuery(String category, String minRam, Integer maxPrice, Integer minCores, String sort) {
+        ProductQuery.ProductQueryBuilder query = ProductQuery.builder()
+                .category(category)
+                .minRamBytes(minRam != null ? HardwareSpecs.parseBytes(minRam) : null)
+                .maxPrice(maxPrice)
+                .minCores(minCores);
+        if(sort != null) {
+            boolean descending = sort.startsWith("-");
+            String attribute = descending ? sort.substring(1) : sort;
+            query.sort(ProductQuery.Sort.valueOf(attribute.toUpperCase(Locale.ROOT))).descending(descending);
+        }
+        return query.build();
+    }
+
+    private SerializedCatalog serialize(ProductCatalog catalog) throws JsonProcessingException {
+        SerializedCatalog current = serializedCatalog;
+        if(current != null && current.version == catalog.getVersion()) return current;
+        // All the products of the catalog are mapped to DTO's and serialized only once
+        List<FindProductResponseDto> content = catalog.getProducts().stream()
+                .map(restProductMapper::asFindResponse)
+                .collect(Collectors.toList());
+        RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        String etag = "\"" + Hashing.sha256().hashBytes(body) + "\"";
+        SerializedCatalog serialized = new SerializedCatalog(catalog.getVersion(), body, etag);
+        serializedCatalog = serialized;
+        return serialized;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if(ifNoneMatch == null) return false;
+        for(String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses the weak comparison
+            if(tag.startsWith("W/")) tag = tag.substring(2);
+            if(tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static final class SerializedCatalog {
+
+        private final long version;
+        private final byte[] body;
+        private final String etag;
+
+        private SerializedCatalog(long version, byte[] body, String etag) {
+            this.version = version;
+            this.body = body;
+            this.etag = etag;
+        }
+
+    }
+
 }
@@ -0,0 +1,27 @@
+package es.urjc.code.daw.marketplace.api.product.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportProductsResponseDto {
+
+    @JsonProperty("inserted_products")
+    private Long insertedProducts;
+
+    @JsonProperty("updated_products")
+    private Long updatedProducts;
+
+    @JsonProperty("errors")
+    private List<String> errors;
+
+    @JsonProperty("elapsed_millis")
+    private Long elapsedMillis;
+
+}
@@ -7,9 +7,14 @@ import es.urjc.code.daw.marketplace.domain.AccumulativeDiscount;
 import es.urjc.code.daw.marketplace.domain.OneTimeDiscount;
 import es.urjc.code.daw.marketplace.domain.Product;
 import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.pricing.PricingRule;
+import es.urjc.code.daw.marketplace.pricing.SimulationResult;
 import es.urjc.code.daw.marketplace.service.AuthenticationService;
+import es.urjc.code.daw.marketplace.service.ActiveDiscounts;
 import es.urjc.code.daw.marketplace.service.ProductService;
 import es.urjc.code.daw.marketplace.service.SaleService;
+import es.urjc.code.daw.marketplace.service.SaleSimulationService;
+import es.urjc.code.daw.marketplace.util.TimeUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -19,6 +24,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Calendar;
+import java.util.Date;
 import java.util.Optional;
 
 @CrossOrigin("*")
@@ -28,15 +35,18 @@ public class SaleRestController {
     private static final String BASE_ROUTE = "/api/sales";
 
     private final SaleService saleService;
+    private final SaleSimulationService saleSimulationService;
     private final ProductService productService;
     private final RestSaleMapper restSaleMapper;
     private final AuthenticationService authenticationService;
 
     public SaleRestController(SaleService saleService,
+                              SaleSimulationService saleSimulationService,
                               ProductService productService,
                               RestSaleMapper restSaleMapper,
                               AuthenticationService authenticationService) {
         this.saleService = saleService;
+        this.saleSimulationService = saleSimulationService;
         this.productService = productService;
         this.restSaleMapper = restSaleMapper;
         this.authenticationService = authenticationService;
@@ -79,7 +89,8 @@ public class SaleRestController {
         // Return the details of the specified discount type if they exist
         if(saleType.equals("onetime")) {
             // Check if there is a one time discount active
-            Optional<OneTimeDiscount> optional = saleService.getCurrentOtd();
+            ActiveDiscounts activeDiscounts = saleService.getActiveDiscounts();
+            Optional<OneTimeDiscount> optional = activeDiscounts.getOtd();
             if (optional.isEmpty()) {
                 final String message = "There is currently no one time discount active";
                 RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
@@ -87,7 +98,7 @@ public class SaleRestController {
             }
             // Obtain the discount and map it to a DTO
             OneTimeDiscount discount = optional.get();
-            Product product = productService.findProductById(discount.getProductId());
+            Product product = activeDiscounts.getOtdProduct().orElseThrow();
             FindOtdResponseDto content = restSaleMapper.asFindResponse(discount, product);
             content.setDiscountedPrice(((100 - content.getDiscount()) * product.getPrice()) / 100);
             // Return a successful response with the discount information
@@ -96,7 +107,8 @@ public class SaleRestController {
         }
         else if(saleType.equals("accumulative")) {
             // Check if there is an accumulative discount active
-            Optional<AccumulativeDiscount> optional = saleService.getCurrentAd();
+            ActiveDiscounts activeDiscounts = saleService.getActiveDiscounts();
+            Optional<AccumulativeDiscount> optional = activeDiscounts.getAd();
             if (optional.isEmpty()) {
                 final String message = "There is currently no accumulative discount active";
                 RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
@@ -104,7 +116,7 @@ public class SaleRestController {
             }
             // Obtain the discount and map it to a DTO
             AccumulativeDiscount discount = optional.get();
-            Product product = productService.findProductById(discount.getProductId());
+            Product product = activeDiscounts.getAdProduct().orElseThrow();
             FindAdResponseDto content = restSaleMapper.asFindResponse(discount, product);
             content.setDiscountedPrice(((100 - content.getDiscount()) * product.getPrice()) / 100);
             // Return a successful response with the discount information
@@ -201,4 +213,222 @@ public class SaleRestController {
         }
     }
 
-}
\ No newline at end of file
+    @Operation(summary = "Creates a new discount of the given type alongside the existing ones (overlapping discounts stack)")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "The discount has been successfully created",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "The sale type or the discounted product are not valid",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester has no permissions to perform this operation",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/{type}",
+            method = RequestMethod.POST
+    )
+    public ResponseEntity<?> createDiscount(@PathVariable("type") String saleType,
+                                            @RequestBody UpdateSaleRequestDto request) {
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        if(!loggedUser.isAdmin()) {
+            final String message = "You have no permission to perform this operation (only the admin)";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the discounted product exists
+        Product product = request.getProductId() != null ? productService.findProductById(request.getProductId()) : null;
+        if(product == null) {
+            final String message = "You must provide the id of an existing product to be discounted";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        if("onetime".equals(saleType)) {
+            // Create the one time discount (otd) without touching the other ones
+            OneTimeDiscount created = saleService.createOtd(restSaleMapper.asOtd(request));
+            FindOtdResponseDto content = restSaleMapper.asFindResponse(created, product);
+            content.setDiscountedPrice(((100 - content.getDiscount()) * product.getPrice()) / 100);
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.CREATED).content(content).build();
+            return new ResponseEntity<>(response, HttpStatus.CREATED);
+        }
+        else if("accumulative".equals(saleType)) {
+            // Create the accumulative discount (ad) without touching the other ones
+            AccumulativeDiscount created = saleService.createAd(restSaleMapper.asAd(request));
+            FindAdResponseDto content = restSaleMapper.asFindResponse(created, product);
+            content.setDiscountedPrice(((100 - content.getDiscount()) * product.getPrice()) / 100);
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.CREATED).content(content).build();
+            return new ResponseEntity<>(response, HttpStatus.CREATED);
+        } else {
+            final String message = "No valid sale type was found in the request";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Operation(summary = "Disables a single discount of the given type, the other ones are left untouched")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "The discount has been successfully disabled",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "There is no known existence of the provided discount type",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester has no permissions to perform this operation",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "There is no enabled discount with the given id",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/{type}/{id}",
+            method = RequestMethod.DELETE
+    )
+    public ResponseEntity<?> disableDiscount(@PathVariable("type") String saleType,
+                                             @PathVariable("id") Long discountId) {
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        if(!loggedUser.isAdmin()) {
+            final String message = "You have no permission to perform this operation (only the admin)";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Disable only the discount with the given id
+        boolean isDisabled;
+        if("onetime".equals(saleType)) {
+            isDisabled = saleService.disableOtd(discountId);
+        } else if("accumulative".equals(saleType)) {
+            isDisabled = saleService.disableAd(discountId);
+        } else {
+            final String message = "No valid sale type was found in the request";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        if(!isDisabled) {
+            final String message = "There is no enabled discount with the given id";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+        RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(UpdateSaleResponseDto.successful()).build();
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Simulate a proposed discount over the historical orders (by default, those of the last month)")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Returns the projected revenue, redemptions and affected customers",
+                    content = {@Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = SimulateSaleResponseDto.class)
+                    )}
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "The proposed discount is not valid",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester has no permissions to perform this operation",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/simulate",
+            method = RequestMethod.POST
+    )
+    public ResponseEntity<?> simulateDiscount(@RequestBody SimulateSaleRequestDto request) {
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the user that requests the simulation is an admin
+        if(!loggedUser.isAdmin()) {
+            final String message = "You have no permission to perform this operation (only the admin)";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the proposed discount is well defined
+        PricingRule.Kind kind = "onetime".equals(request.getType()) ? PricingRule.Kind.ONE_TIME
+                : "accumulative".equals(request.getType()) ? PricingRule.Kind.ACCUMULATIVE : null;
+        if(kind == null) {
+            final String message = "You must provide a valid sale type (onetime or accumulative) to be simulated";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        if(request.getProductId() == null || request.getDiscount() == null || request.getDiscount() < 1 || request.getDiscount() > 100) {
+            final String message = "You must provide a product id and a discount between 1 and 100";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        if(kind == PricingRule.Kind.ACCUMULATIVE && (request.getAmount() == null || request.getAmount() < 1)) {
+            final String message = "You must provide a positive bulk amount for an accumulative discount";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // Default to the last month of orders
+        Date to = request.getTo() != null ? request.getTo() : TimeUtils.now();
+        Date from = request.getFrom();
+        if(from == null) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(to);
+            calendar.add(Calendar.MONTH, -1);
+            from = calendar.getTime();
+        }
+        if(!from.before(to)) {
+            final String message = "The simulated range must start before it ends";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.BAD_REQUEST).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        // Replay the historical orders against the proposed rule
+        PricingRule rule = PricingRule.builder()
+                .kind(kind)
+                .productId(request.getProductId())
+                .discountPercentage(request.getDiscount())
+                .bulkAmount(kind == PricingRule.Kind.ACCUMULATIVE ? request.getAmount() : 0)
+            .build();
+        SimulationResult result = saleSimulationService.simulate(rule, from, to);
+        // Return a successful response with the projection
+        SimulateSaleResponseDto content = SimulateSaleResponseDto.builder()
+                .from(from)
+                .to(to)
+                .replayedOrders(result.getReplayedOrders())
+                .redemptions(result.getRedemptions())
+                .affectedCustomers(result.getAffectedCustomers())
+                .actualRevenue(result.getActualRevenue())
+                .projectedRevenue(result.getProjectedRevenue())
+                .revenueDelta(result.getProjectedRevenue() - result.getActualRevenue())
+                .elapsedMillis(result.getElapsedMillis())
+            .build();
+        RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+}
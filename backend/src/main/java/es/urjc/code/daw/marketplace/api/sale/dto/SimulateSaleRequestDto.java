@@ -0,0 +1,36 @@
+package es.urjc.code.daw.marketplace.api.sale.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SimulateSaleRequestDto {
+
+    @JsonProperty("type")
+    private String type;
+
+    @JsonProperty("product_id")
+    private Long productId;
+
+    @JsonProperty("discount")
+    private Integer discount;
+
+    @JsonProperty("amount")
+    private Integer amount;
+
+    @JsonProperty("from")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy")
+    private Date from;
+
+    @JsonProperty("to")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy")
+    private Date to;
+
+}
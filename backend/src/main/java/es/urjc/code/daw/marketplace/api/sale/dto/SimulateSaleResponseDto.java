@@ -0,0 +1,45 @@
+package es.urjc.code.daw.marketplace.api.sale.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SimulateSaleResponseDto {
+
+    @JsonProperty("from")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy")
+    private Date from;
+
+    @JsonProperty("to")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy")
+    private Date to;
+
+    @JsonProperty("replayed_orders")
+    private Long replayedOrders;
+
+    @JsonProperty("redemptions")
+    private Long redemptions;
+
+    @JsonProperty("affected_customers")
+    private Long affectedCustomers;
+
+    @JsonProperty("actual_revenue")
+    private Long actualRevenue;
+
+    @JsonProperty("projected_revenue")
+    private Long projectedRevenue;
+
+    @JsonProperty("revenue_delta")
+    private Long revenueDelta;
+
+    @JsonProperty("elapsed_millis")
+    private Long elapsedMillis;
+
+}
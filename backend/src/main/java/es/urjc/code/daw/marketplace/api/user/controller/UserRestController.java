@@ -7,7 +7,11 @@ import es.urjc.code.daw.marketplace.domain.User;
 import es.urjc.code.daw.marketplace.service.AuthenticationService;
 import es.urjc.code.daw.marketplace.service.EmailService;
 import es.urjc.code.daw.marketplace.service.PictureService;
+import es.urjc.code.daw.marketplace.service.StoredPicture;
+import es.urjc.code.daw.marketplace.service.ThumbnailService;
 import es.urjc.code.daw.marketplace.service.UserService;
+import es.urjc.code.daw.marketplace.storage.CacheStats;
+import es.urjc.code.daw.marketplace.storage.ContentAddressedStore;
 import es.urjc.code.daw.marketplace.util.DecodedBase64MultipartFile;
 import es.urjc.code.daw.marketplace.util.EmailMessageFactory;
 import io.swagger.v3.oas.annotations.Operation;
@@ -18,17 +22,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tomcat.util.codec.binary.Base64;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @CrossOrigin("*")
@@ -132,6 +141,7 @@ public class UserRestController {
             consumes = MediaType.APPLICATION_JSON_VALUE
     )
     public ResponseEntity<RestResponseDto> updateUser(@PathVariable("id") Long userId,
+                                                      @RequestParam(value = "encodedImage", defaultValue = "false") boolean withEncodedImage,
                                                       @RequestBody UpdateUserRequestDto request) {
         User loggedUser = authenticationService.getTokenUser();
         if(loggedUser == null) {
@@ -167,7 +177,7 @@ public class UserRestController {
         // Update the user data
         User storedUser = userService.updateUser(updateUser, loggedUser.isAdmin());
         // Send a successful response
-        FindUserResponseDto findUser = userMapper.asFindUserResponse(storedUser, pictureService.getEncodedPicture(storedUser));
+        FindUserResponseDto findUser = asFindUserResponse(storedUser, withEncodedImage);
         RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(findUser).build();
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
@@ -194,7 +204,8 @@ public class UserRestController {
             path = BASE_ROUTE + "/{id}",
             method = RequestMethod.GET
     )
-    public ResponseEntity<RestResponseDto> findUser(@PathVariable("id") Long userId) throws Exception {
+    public ResponseEntity<RestResponseDto> findUser(@PathVariable("id") Long userId,
+                                                    @RequestParam(value = "encodedImage", defaultValue = "false") boolean withEncodedImage) throws Exception {
         User loggedUser = authenticationService.getTokenUser();
         if(loggedUser == null) {
             final String message = "The token was invalid or no token was provided at all";
@@ -214,10 +225,8 @@ public class UserRestController {
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
         }
-        // Find the base64 encoded picture
-        String encodedImage = pictureService.getEncodedPicture(findUser);
-        // Build the response with the user and encoded image
-        FindUserResponseDto content = userMapper.asFindUserResponse(findUser, encodedImage);
+        // Build the response with the user and the picture url (and the encoded picture only if requested)
+        FindUserResponseDto content = asFindUserResponse(findUser, withEncodedImage);
         // Send successful response
         RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
         return new ResponseEntity<>(response, HttpStatus.OK);
@@ -246,7 +255,8 @@ public class UserRestController {
             method = RequestMethod.GET
     )
     public ResponseEntity<RestResponseDto> findUsers(@RequestParam("page") Integer page,
-                                                               @RequestParam("amount") Integer amount) {
+                                                               @RequestParam("amount") Integer amount,
+                                                               @RequestParam(value = "encodedImage", defaultValue = "false") boolean withEncodedImage) {
         User loggedUser = authenticationService.getTokenUser();
         if(loggedUser == null) {
             final String message = "The token was invalid or no token was provided at all";
@@ -266,14 +276,152 @@ public class UserRestController {
             RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
             return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
         }
-        // Map users to DTO's
-        List<FindUserResponseDto> content = users.stream().map(user -> {
-            String encodedImage = pictureService.getEncodedPicture(user);
-            return userMapper.asFindUserResponse(user, encodedImage);
-        }).collect(Collectors.toList());
+        // Map users to DTO's (the pictures are fetched by the client through their urls)
+        List<FindUserResponseDto> content = users.stream()
+                .map(user -> asFindUserResponse(user, withEncodedImage))
+                .collect(Collectors.toList());
         // Send successful response
         RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    @Operation(summary = "Streams the profile picture of a user, or its smallest thumbnail (32, 64 or 256 pixels) that fits the given size. " +
+            "When the picture id is part of the path the response can be cached forever, as pictures are never modified")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "The picture is streamed",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "The picture has not changed since the given entity tag or date",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester is not authorized to perform this operation",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "There was no user or no picture (with the given picture id) associated with the provided user id",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = { BASE_ROUTE + "/{id}/picture", BASE_ROUTE + "/{id}/picture/{pictureId}" },
+            method = RequestMethod.GET
+    )
+    public ResponseEntity<?> findUserPicture(@PathVariable("id") Long userId,
+                                             @PathVariable(value = "pictureId", required = false) String pictureId,
+                                             @RequestParam(value = "size", required = false) Integer size,
+                                             WebRequest webRequest) {
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the logged in user has permissions to see the picture
+        if(!loggedUser.isAdmin() && userId.longValue() != loggedUser.getId().longValue()) {
+            final String message = "You have no permission to perform this operation (only the user itself or the admin)";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the user exists and has a picture
+        User findUser = userService.findUserById(userId);
+        // A versioned url only serves the picture it was built for
+        if(findUser != null && pictureId != null && !pictureId.equals(findUser.getProfilePictureFilename())) {
+            findUser = null;
+        }
+        // The smallest thumbnail that fits the size hint is served (the original until it is generated)
+        Optional<StoredPicture> picture = findUser != null ? pictureService.findPicture(findUser, size) : Optional.empty();
+        if(picture.isEmpty()) {
+            final String message = "There is no picture associated to the provided user id";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.NOT_FOUND).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+        // The client may already hold the current picture
+        StoredPicture storedPicture = picture.get();
+        // Content-addressed pictures never change under a versioned url, unless a pending thumbnail falls back to the original
+        boolean isFallback = size != null && size <= ThumbnailService.SIZES[ThumbnailService.SIZES.length - 1]
+                && storedPicture.getPath().getFileName().toString().equals(findUser.getProfilePictureFilename());
+        CacheControl cacheControl = pictureId != null && storedPicture.isImmutable() && !isFallback
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate()
+                : CacheControl.noCache().cachePrivate();
+        if(webRequest.checkNotModified(storedPicture.getEtag(), storedPicture.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        // Stream the file as is, it is never loaded in memory nor encoded
+        return ResponseEntity.ok()
+                .eTag(storedPicture.getEtag())
+                .lastModified(storedPicture.getLastModified())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.parseMediaType(storedPicture.getContentType()))
+                .contentLength(storedPicture.getSize())
+            .body(new FileSystemResource(storedPicture.getPath()));
+    }
+
+    @Operation(summary = "Finds the counters of the in-memory cache of profile pictures")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "The counters were found",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PictureCacheStatsResponseDto.class)) }
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "The requester is not authorized to perform this operation",
+                    content = @Content
+            ),
+    })
+    @RequestMapping(
+            path = BASE_ROUTE + "/pictures/cache",
+            method = RequestMethod.GET
+    )
+    public ResponseEntity<RestResponseDto> findPictureCacheStats() {
+        User loggedUser = authenticationService.getTokenUser();
+        if(loggedUser == null) {
+            final String message = "The token was invalid or no token was provided at all";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Ensure the user that asks for the counters is an admin
+        if(!loggedUser.isAdmin()) {
+            final String message = "You have no permission to perform this operation (only the admin)";
+            RestResponseDto response = RestResponseDto.builder().status(HttpStatus.UNAUTHORIZED).content(message).build();
+            return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        }
+        // Map the counters to the DTO
+        CacheStats stats = pictureService.getCacheStats();
+        PictureCacheStatsResponseDto content = PictureCacheStatsResponseDto.builder()
+                .hits(stats.getHits())
+                .misses(stats.getMisses())
+                .hitRate(stats.getHitRate())
+                .evictions(stats.getEvictions())
+                .entries(stats.getEntries())
+                .sizeBytes(stats.getSizeBytes())
+                .capacityBytes(stats.getCapacityBytes())
+            .build();
+        // Return a successful response
+        RestResponseDto response = RestResponseDto.builder().status(HttpStatus.OK).content(content).build();
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    private FindUserResponseDto asFindUserResponse(User user, boolean withEncodedImage) {
+        String encodedImage = withEncodedImage ? pictureService.getEncodedPicture(user) : "";
+        FindUserResponseDto content = userMapper.asFindUserResponse(user, encodedImage);
+        if(user.getProfilePictureFilename() != null) {
+            // Content-addressed pictures get a versioned url, which changes along with the picture
+            String pictureUrl = BASE_ROUTE + "/" + user.getId() + "/picture";
+            if(ContentAddressedStore.isBlobId(user.getProfilePictureFilename())) {
+                pictureUrl += "/" + user.getProfilePictureFilename();
+            }
+            content.setPictureUrl(pictureUrl);
+        }
+        return content;
+    }
+
 }
@@ -32,6 +32,10 @@ public class FindUserResponseDto {
     @JsonProperty("is_admin")
     private Boolean isAdmin = false;
 
+    @JsonProperty("picture_url")
+    private String pictureUrl;
+
+    // Only filled in when explicitly requested, the picture url is the way to go
     @JsonProperty("encoded_image")
     private String encodedImage = "";
 
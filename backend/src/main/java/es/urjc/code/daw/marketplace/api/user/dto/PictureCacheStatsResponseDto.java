@@ -0,0 +1,34 @@
+package es.urjc.code.daw.marketplace.api.user.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PictureCacheStatsResponseDto {
+
+    @JsonProperty("hits")
+    private Long hits;
+
+    @JsonProperty("misses")
+    private Long misses;
+
+    @JsonProperty("hit_rate")
+    private Double hitRate;
+
+    @JsonProperty("evictions")
+    private Long evictions;
+
+    @JsonProperty("entries")
+    private Integer entries;
+
+    @JsonProperty("size_bytes")
+    private Long sizeBytes;
+
+    @JsonProperty("capacity_bytes")
+    private Long capacityBytes;
+
+}
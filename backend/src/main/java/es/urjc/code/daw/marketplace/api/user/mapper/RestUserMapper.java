@@ -32,6 +32,7 @@ public interface RestUserMapper {
 
     @Mapping(target = "isAdmin", source = "user.admin")
     @Mapping(target = "encodedImage", source = "encodedImage")
+    @Mapping(target = "pictureUrl", ignore = true)
     FindUserResponseDto asFindUserResponse(User user, String encodedImage);
 
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package es.urjc.code.daw.marketplace.config;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class represents the binding of the configuration
+ * file of the order events journal (location, segments, flushing).
+ */
+@Component
+@Data
+@ConfigurationProperties("journal")
+@PropertySource("classpath:journal.properties")
+public class JournalProperties {
+
+    @Value("${journal.directory}")
+    private String directory;
+
+    @Value("${journal.segment_size_mb}")
+    private Integer segmentSizeMb;
+
+    @Value("${journal.flush_millis}")
+    private Long flushMillis;
+
+}
@@ -0,0 +1,43 @@
+package es.urjc.code.daw.marketplace.config;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class represents the binding of the configuration
+ * file of the profile pictures (location, thumbnail pipeline, sweeping, cache).
+ */
+@Component
+@Data
+@ConfigurationProperties("pictures")
+@PropertySource("classpath:pictures.properties")
+public class PictureProperties {
+
+    @Value("${pictures.directory}")
+    private String directory;
+
+    @Value("${pictures.thumbnails.threads}")
+    private Integer thumbnailThreads;
+
+    @Value("${pictures.thumbnails.queue_capacity}")
+    private Integer thumbnailQueueCapacity;
+
+    @Value("${pictures.thumbnails.max_pixels}")
+    private Long thumbnailMaxPixels;
+
+    @Value("${pictures.sweep_millis}")
+    private Long sweepMillis;
+
+    @Value("${pictures.sweep_grace_millis}")
+    private Long sweepGraceMillis;
+
+    @Value("${pictures.cache.capacity_bytes}")
+    private Long cacheCapacityBytes;
+
+    @Value("${pictures.cache.max_entry_bytes}")
+    private Long cacheMaxEntryBytes;
+
+}
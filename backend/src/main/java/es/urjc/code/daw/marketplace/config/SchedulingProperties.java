@@ -0,0 +1,34 @@
+package es.urjc.code.daw.marketplace.config;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class represents the binding of the configuration
+ * file of the background schedulers (tick rates, horizons...).
+ */
+@Component
+@Data
+@ConfigurationProperties("scheduling")
+@PropertySource("classpath:scheduling.properties")
+public class SchedulingProperties {
+
+    @Value("${scheduling.expiry.tick_millis}")
+    private Long expiryTickMillis;
+
+    @Value("${scheduling.expiry.horizon_hours}")
+    private Integer expiryHorizonHours;
+
+    @Value("${scheduling.expiry.reminder_days}")
+    private Integer expiryReminderDays;
+
+    @Value("${scheduling.archive.expired_months}")
+    private Integer archiveExpiredMonths;
+
+    @Value("${scheduling.archive.chunk_size}")
+    private Integer archiveChunkSize;
+
+}
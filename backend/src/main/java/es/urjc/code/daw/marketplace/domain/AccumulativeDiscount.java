@@ -9,7 +9,7 @@ import java.util.Date;
 import java.util.Set;
 
 @Entity
-@Table(name = "accumulative_discounts")
+@Table(name = "accumulative_discounts", indexes = @Index(name = "adEnabled", columnList = "enabled, id"))
 @Getter
 @Setter
 @AllArgsConstructor
@@ -46,7 +46,8 @@ public class AccumulativeDiscount {
     @JoinTable(
             name = "ad_user",
             joinColumns = { @JoinColumn(name = "ad_id", referencedColumnName = "id") },
-            inverseJoinColumns = { @JoinColumn(name = "user_id", referencedColumnName = "id") }
+            inverseJoinColumns = { @JoinColumn(name = "user_id", referencedColumnName = "id") },
+            uniqueConstraints = @UniqueConstraint(name = "uniqueAdConsumer", columnNames = { "ad_id", "user_id" })
     )
     private Set<User> consumers;
 
@@ -0,0 +1,44 @@
+package es.urjc.code.daw.marketplace.domain;
+
+import lombok.*;
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A cold copy of an order that expired long ago. Archived orders are moved
+ * out of the orders table so the hot table only holds the recent ones.
+ */
+@Entity
+@Table(name = "ordered_services_archive", indexes = {
+        @Index(name = "archivedOrderCreationDate", columnList = "creation_date"),
+        @Index(name = "archivedOrderUserProduct", columnList = "user_order, product_order"),
+        @Index(name = "archivedOrderProductCreationDate", columnList = "product_order, creation_date")
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ArchivedOrder {
+
+    @Id
+    private Long id;
+
+    @Column(name = "final_cost")
+    private Integer finalCost;
+
+    @Column(name = "product_order")
+    private Long productId;
+
+    @Column(name = "user_order")
+    private Long userId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "creation_date")
+    private Date creationDate;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "expiry_date")
+    private Date expiryDate;
+
+}
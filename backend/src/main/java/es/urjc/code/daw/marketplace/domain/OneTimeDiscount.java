@@ -9,7 +9,7 @@ import java.util.Date;
 import java.util.Set;
 
 @Entity
-@Table(name = "one_time_discounts")
+@Table(name = "one_time_discounts", indexes = @Index(name = "otdEnabled", columnList = "enabled, id"))
 @Getter
 @Setter
 @AllArgsConstructor
@@ -41,7 +41,8 @@ public class OneTimeDiscount {
     @JoinTable(
             name = "otd_user",
             joinColumns = { @JoinColumn(name = "otd_id", referencedColumnName = "id") },
-            inverseJoinColumns = { @JoinColumn(name = "user_id", referencedColumnName = "id") }
+            inverseJoinColumns = { @JoinColumn(name = "user_id", referencedColumnName = "id") },
+            uniqueConstraints = @UniqueConstraint(name = "uniqueOtdConsumer", columnNames = { "otd_id", "user_id" })
     )
     private Set<User> consumers;
 
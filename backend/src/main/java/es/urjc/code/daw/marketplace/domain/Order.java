@@ -9,7 +9,10 @@ import java.util.TimeZone;
 
 @ToString
 @Entity
-@Table(name = "ordered_services")
+@Table(name = "ordered_services", indexes = {
+        @Index(name = "orderExpiryDate", columnList = "expiry_date"),
+        @Index(name = "orderProductCreationDate", columnList = "product_order, creation_date")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -40,6 +43,9 @@ public class Order {
     @Column(name = "expiry_date")
     private Date expiryDate;
 
+    @Version
+    private Long version;
+
     @PrePersist
     private void onCreate() {
         if(creationDate == null) {
@@ -57,9 +63,4 @@ public class Order {
         return today.after(expiryDate);
     }
 
-    public void applyDiscount(int discountPercentage) {
-        int finalCost = ((100 - discountPercentage) * product.getPrice()) / 100;
-        this.setFinalCost(finalCost);
-    }
-
 }
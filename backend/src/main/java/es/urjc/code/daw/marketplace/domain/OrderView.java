@@ -0,0 +1,67 @@
+package es.urjc.code.daw.marketplace.domain;
+
+import lombok.*;
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A denormalized read model of an order which holds everything the order
+ * listings need, so they are served without joining (or lazy loading) products.
+ */
+@Entity
+@Table(name = "order_view", indexes = {
+        @Index(name = "orderViewUserOrder", columnList = "user_id, order_id"),
+        @Index(name = "orderViewProduct", columnList = "product_id")
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OrderView {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "product_id")
+    private Long productId;
+
+    private String category;
+
+    private String ram;
+
+    private String cores;
+
+    private String storage;
+
+    private String transfer;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "creation_date")
+    private Date creationDate;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "expiry_date")
+    private Date expiryDate;
+
+    public static OrderView of(Order order) {
+        Product product = order.getProduct();
+        return OrderView.builder()
+                .orderId(order.getId())
+                .userId(order.getUser().getId())
+                .productId(product.getId())
+                .category(product.getCategory())
+                .ram(product.getRam())
+                .cores(product.getCores())
+                .storage(product.getStorage())
+                .transfer(product.getTransfer())
+                .creationDate(order.getCreationDate())
+                .expiryDate(order.getExpiryDate())
+            .build();
+    }
+
+}
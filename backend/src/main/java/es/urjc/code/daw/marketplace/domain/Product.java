@@ -1,12 +1,19 @@
 package es.urjc.code.daw.marketplace.domain;
 
+import es.urjc.code.daw.marketplace.util.HardwareSpecs;
 import lombok.*;
 import javax.persistence.*;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "productCategoryPrice", columnList = "category, price"),
+        @Index(name = "productRam", columnList = "ram_bytes"),
+        @Index(name = "productCores", columnList = "core_count"),
+        @Index(name = "productStorage", columnList = "storage_bytes"),
+        @Index(name = "productTransfer", columnList = "transfer_bytes")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -22,6 +29,7 @@ public class Product {
 
     private Integer price;
 
+    // The display strings are derived from the numeric specs, which are the ones to query
     private String ram;
 
     private String cores;
@@ -30,10 +38,100 @@ public class Product {
 
     private String transfer;
 
+    @Column(name = "ram_bytes")
+    private Long ramBytes;
+
+    @Column(name = "core_count")
+    private Integer coreCount;
+
+    @Column(name = "storage_bytes")
+    private Long storageBytes;
+
+    // Monthly transfer
+    @Column(name = "transfer_bytes")
+    private Long transferBytes;
+
     @OneToMany(mappedBy = "product")
     @Builder.Default
     private Set<Order> orders = new HashSet<>();
 
+    /**
+     * Returns a copy of the product details, detached from the persistence context
+     * and without its orders, which can be shared between threads.
+     */
+    public Product detachedCopy() {
+        return Product.builder()
+                .id(id)
+                .category(category)
+                .price(price)
+                .ram(ram)
+                .cores(cores)
+                .storage(storage)
+                .transfer(transfer)
+                .ramBytes(ramBytes)
+                .coreCount(coreCount)
+                .storageBytes(storageBytes)
+                .transferBytes(transferBytes)
+            .build();
+    }
+
+    public void setRam(String ram) {
+        setRamBytes(ram != null ? HardwareSpecs.parseBytes(ram) : null);
+    }
+
+    public void setRamBytes(Long ramBytes) {
+        this.ramBytes = ramBytes;
+        this.ram = ramBytes != null ? HardwareSpecs.formatBytes(ramBytes) : null;
+    }
+
+    public void setCores(String cores) {
+        setCoreCount(cores != null ? HardwareSpecs.parseCores(cores) : null);
+    }
+
+    public void setCoreCount(Integer coreCount) {
+        this.coreCount = coreCount;
+        this.cores = coreCount != null ? HardwareSpecs.formatCores(coreCount) : null;
+    }
+
+    public void setStorage(String storage) {
+        setStorageBytes(storage != null ? HardwareSpecs.parseBytes(storage) : null);
+    }
+
+    public void setStorageBytes(Long storageBytes) {
+        this.storageBytes = storageBytes;
+        this.storage = storageBytes != null ? HardwareSpecs.formatBytes(storageBytes) : null;
+    }
+
+    public void setTransfer(String transfer) {
+        setTransferBytes(transfer != null ? HardwareSpecs.parseBytes(transfer) : null);
+    }
+
+    public void setTransferBytes(Long transferBytes) {
+        this.transferBytes = transferBytes;
+        this.transfer = transferBytes != null ? HardwareSpecs.formatBytes(transferBytes) : null;
+    }
+
+    /**
+     * Keeps the numeric specs and the display strings in sync when the product
+     * was built from just one of them.
+     */
+    @PrePersist
+    @PreUpdate
+    public void syncSpecs() {
+        if(ramBytes == null && ram != null) setRam(ram);
+        else setRamBytes(ramBytes);
+        if(coreCount == null && cores != null) setCores(cores);
+        else setCoreCount(coreCount);
+        if(storageBytes == null && storage != null) setStorage(storage);
+        else setStorageBytes(storageBytes);
+        if(transferBytes == null && transfer != null) setTransfer(transfer);
+        else setTransferBytes(transferBytes);
+    }
+
+    public boolean hasNumericSpecs() {
+        return ramBytes != null && coreCount != null && storageBytes != null && transferBytes != null;
+    }
+
     public int getMonthlyPrice() {
         return getPrice();
     }
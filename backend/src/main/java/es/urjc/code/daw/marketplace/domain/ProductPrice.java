@@ -0,0 +1,45 @@
+package es.urjc.code.daw.marketplace.domain;
+
+import lombok.*;
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The price of a product from a given moment on, until the next price of the same
+ * product. The history is append-only, so past orders can always be priced as they were.
+ */
+@Entity
+@Table(name = "product_prices")
+@IdClass(ProductPrice.Key.class)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductPrice {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Id
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "valid_from")
+    private Date validFrom;
+
+    @Column(name = "price", nullable = false)
+    private Integer price;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+
+        private Long productId;
+
+        private Date validFrom;
+
+    }
+
+}
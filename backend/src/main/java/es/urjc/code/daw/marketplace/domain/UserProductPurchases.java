@@ -0,0 +1,43 @@
+package es.urjc.code.daw.marketplace.domain;
+
+import lombok.*;
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * A counter of the purchases of a product by a user (archived orders included),
+ * maintained on each order placement so it never has to be counted again.
+ */
+@Entity
+@Table(name = "user_product_purchases")
+@IdClass(UserProductPurchases.Key.class)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserProductPurchases {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "count", nullable = false)
+    private Integer count;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+
+        private Long userId;
+
+        private Long productId;
+
+    }
+
+}
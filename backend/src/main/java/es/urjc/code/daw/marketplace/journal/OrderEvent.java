@@ -0,0 +1,51 @@
+package es.urjc.code.daw.marketplace.journal;
+
+import lombok.*;
+import java.nio.ByteBuffer;
+
+/**
+ * A lifecycle change of an order as it is stored in the journal. The meaning
+ * of the value depends on the type: the final cost when placed, the discounted
+ * amount when a discount is applied and the renewed months when renewed.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class OrderEvent {
+
+    public static final int SIZE = Byte.BYTES + Long.BYTES * 5 + Integer.BYTES;
+
+    public enum Type { PLACED, DISCOUNT_APPLIED, RENEWED, CANCELLED, EXPIRED }
+
+    private final Type type;
+    private final long timestamp;
+    private final long orderId;
+    private final long userId;
+    private final long productId;
+    private final int value;
+    private final long expiryDate;
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(timestamp);
+        buffer.putLong(orderId);
+        buffer.putLong(userId);
+        buffer.putLong(productId);
+        buffer.putInt(value);
+        buffer.putLong(expiryDate);
+    }
+
+    public static OrderEvent readFrom(ByteBuffer buffer) {
+        return new OrderEvent(
+                Type.values()[buffer.get()],
+                buffer.getLong(),
+                buffer.getLong(),
+                buffer.getLong(),
+                buffer.getLong(),
+                buffer.getInt(),
+                buffer.getLong()
+        );
+    }
+
+}
@@ -0,0 +1,161 @@
+package es.urjc.code.daw.marketplace.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal made of fixed size, preallocated and memory-mapped segment
+ * files. Each record is laid out as [payload length][payload][crc32 of the payload],
+ * a zero length marks the end of the written part of a segment.
+ *
+ * Appending only copies the record into the mapped segment, the records are made
+ * durable in groups by {@link #flush()} (group commit).
+ */
+public class SegmentedJournal implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int RECORD_OVERHEAD = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Path> segments;
+    private final List<MappedByteBuffer> unflushed = new ArrayList<>();
+
+    private MappedByteBuffer current;
+    private boolean dirty;
+
+    public SegmentedJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            this.segments = files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        if(segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            current = map(segments.get(segments.size() - 1), FileChannel.MapMode.READ_WRITE);
+            // Recover the write position skipping any torn record at the tail
+            current.position(0);
+            while(readRecord(current, null));
+        }
+    }
+
+    /**
+     * Appends a record whose payload is written by the given writer.
+     *
+     * @param payloadLength the exact amount of bytes the writer puts
+     * @param writer the writer of the record payload
+     */
+    public synchronized void append(int payloadLength, Consumer<ByteBuffer> writer) throws IOException {
+        int recordLength = payloadLength + RECORD_OVERHEAD;
+        if(recordLength + Integer.BYTES > segmentSize) throw new IllegalArgumentException("The record does not fit in a segment");
+        if(current.remaining() < recordLength + Integer.BYTES) {
+            unflushed.add(current);
+            openSegment(segments.size());
+        }
+        int start = current.position();
+        current.position(start + Integer.BYTES);
+        try {
+            writer.accept(current);
+            if(current.position() != start + Integer.BYTES + payloadLength) {
+                throw new IllegalStateException("The writer did not put the declared amount of bytes");
+            }
+        } catch(RuntimeException exception) {
+            // Nothing is visible until the length is written, so the record is simply discarded
+            current.position(start);
+            throw exception;
+        }
+        ByteBuffer payload = current.duplicate();
+        payload.position(start + Integer.BYTES).limit(start + Integer.BYTES + payloadLength);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        current.putInt(start + Integer.BYTES + payloadLength, (int) crc.getValue());
+        // The length is written last, so a record is only visible once it is complete
+        current.putInt(start, payloadLength);
+        current.position(start + recordLength);
+        dirty = true;
+    }
+
+    /**
+     * Forces every record appended since the last flush to the storage device.
+     */
+    public void flush() {
+        List<MappedByteBuffer> toForce;
+        synchronized (this) {
+            if(!dirty) return;
+            toForce = new ArrayList<>(unflushed);
+            toForce.add(current);
+            unflushed.clear();
+            dirty = false;
+        }
+        toForce.forEach(MappedByteBuffer::force);
+    }
+
+    /**
+     * Sequentially replays every record of the journal, oldest first.
+     *
+     * @param consumer the consumer that receives each record payload
+     */
+    public void replay(Consumer<ByteBuffer> consumer) throws IOException {
+        List<Path> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+        for(Path segment : snapshot) {
+            MappedByteBuffer buffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            while(readRecord(buffer, consumer));
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private boolean readRecord(ByteBuffer buffer, Consumer<ByteBuffer> consumer) {
+        int start = buffer.position();
+        if(buffer.remaining() < RECORD_OVERHEAD) return false;
+        int payloadLength = buffer.getInt(start);
+        if(payloadLength <= 0 || payloadLength > buffer.remaining() - RECORD_OVERHEAD) return false;
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + Integer.BYTES).limit(start + Integer.BYTES + payloadLength);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if((int) crc.getValue() != buffer.getInt(start + Integer.BYTES + payloadLength)) return false;
+        if(consumer != null) consumer.accept(payload.asReadOnlyBuffer());
+        buffer.position(start + payloadLength + RECORD_OVERHEAD);
+        return true;
+    }
+
+    private void openSegment(int index) throws IOException {
+        Path segment = directory.resolve(String.format("%010d%s", index, SEGMENT_SUFFIX));
+        segments.add(segment);
+        current = map(segment, FileChannel.MapMode.READ_WRITE);
+    }
+
+    private MappedByteBuffer map(Path segment, FileChannel.MapMode mode) throws IOException {
+        boolean writable = mode == FileChannel.MapMode.READ_WRITE;
+        try (FileChannel channel = writable
+                ? FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(segment, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            return channel.map(mode, 0, writable ? segmentSize : channel.size());
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package es.urjc.code.daw.marketplace.pricing;
+
+import es.urjc.code.daw.marketplace.domain.ProductPrice;
+import java.util.*;
+
+/**
+ * An immutable, versioned snapshot of the price history of every product. Each product
+ * keeps its prices in two parallel arrays sorted by the moment they became valid, so the
+ * price at any given moment is a binary search away.
+ */
+public final class PriceHistory {
+
+    public static final PriceHistory EMPTY = new PriceHistory(0, List.of());
+
+    private final long version;
+    private final Map<Long, Timeline> timelines;
+
+    /**
+     * @param prices the price history, sorted by product and then by validity start
+     */
+    public PriceHistory(long version, List<ProductPrice> prices) {
+        this.version = version;
+        Map<Long, List<ProductPrice>> byProduct = new HashMap<>();
+        for(ProductPrice price : prices) {
+            byProduct.computeIfAbsent(price.getProductId(), productId -> new ArrayList<>()).add(price);
+        }
+        Map<Long, Timeline> timelines = new HashMap<>(byProduct.size() * 2);
+        byProduct.forEach((productId, productPrices) -> timelines.put(productId, new Timeline(productPrices)));
+        this.timelines = Collections.unmodifiableMap(timelines);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the price of the product at the given moment, if it had any by then.
+     */
+    public Optional<Integer> priceAt(Long productId, Date moment) {
+        Timeline timeline = timelines.get(productId);
+        if(timeline == null) return Optional.empty();
+        return timeline.priceAt(moment.getTime());
+    }
+
+    /**
+     * Returns the latest price of the product, if it has any.
+     */
+    public Optional<Integer> latestPrice(Long productId) {
+        Timeline timeline = timelines.get(productId);
+        if(timeline == null) return Optional.empty();
+        return Optional.of(timeline.prices[timeline.prices.length - 1]);
+    }
+
+    private static final class Timeline {
+
+        private final long[] validFrom;
+        private final int[] prices;
+
+        private Timeline(List<ProductPrice> productPrices) {
+            this.validFrom = new long[productPrices.size()];
+            this.prices = new int[productPrices.size()];
+            for(int index = 0; index < productPrices.size(); index++) {
+                validFrom[index] = productPrices.get(index).getValidFrom().getTime();
+                prices[index] = productPrices.get(index).getPrice();
+            }
+        }
+
+        private Optional<Integer> priceAt(long moment) {
+            int position = Arrays.binarySearch(validFrom, moment);
+            // Not found, so the price is the one of the previous validity start (if any)
+            if(position < 0) position = -position - 2;
+            return position < 0 ? Optional.empty() : Optional.of(prices[position]);
+        }
+
+    }
+
+}
@@ -0,0 +1,20 @@
+package es.urjc.code.daw.marketplace.pricing;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import java.util.List;
+
+/**
+ * The outcome of pricing an order: the final cost and the rules that led to it,
+ * in the order they were applied.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class PriceQuote {
+
+    private final int finalCost;
+    private final List<PricingRule> appliedRules;
+
+}
@@ -0,0 +1,96 @@
+package es.urjc.code.daw.marketplace.pricing;
+
+import es.urjc.code.daw.marketplace.domain.AccumulativeDiscount;
+import es.urjc.code.daw.marketplace.domain.OneTimeDiscount;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * An immutable table of pricing rules indexed by product id, compiled from the
+ * active promotions. Pricing an order only walks the rules of its product and
+ * never accesses the database.
+ *
+ * Stacking precedence: the rules of a product are grouped by {@link PricingRule.Kind}
+ * in declaration order, within a kind only the best eligible rule (highest
+ * percentage, newest on ties) is applied, and the rules of different kinds
+ * compound one after the other.
+ */
+public final class PricingEngine {
+
+    public static final PricingEngine EMPTY = new PricingEngine(Collections.emptyMap());
+
+    private static final Comparator<PricingRule> PRECEDENCE = Comparator
+            .comparing(PricingRule::getKind)
+            .thenComparing(PricingRule::getDiscountPercentage, Comparator.reverseOrder())
+            .thenComparing(PricingRule::getDiscountId, Comparator.reverseOrder());
+
+    private final Map<Long, List<PricingRule>> rulesByProduct;
+
+    private PricingEngine(Map<Long, List<PricingRule>> rulesByProduct) {
+        this.rulesByProduct = rulesByProduct;
+    }
+
+    public static PricingEngine compile(Collection<OneTimeDiscount> otds, Collection<AccumulativeDiscount> ads) {
+        List<PricingRule> rules = new ArrayList<>(otds.size() + ads.size());
+        for(OneTimeDiscount otd : otds) {
+            rules.add(PricingRule.builder()
+                    .discountId(otd.getId())
+                    .kind(PricingRule.Kind.ONE_TIME)
+                    .productId(otd.getProductId())
+                    .discountPercentage(otd.getDiscountPercentage())
+                .build());
+        }
+        for(AccumulativeDiscount ad : ads) {
+            rules.add(PricingRule.builder()
+                    .discountId(ad.getId())
+                    .kind(PricingRule.Kind.ACCUMULATIVE)
+                    .productId(ad.getProductId())
+                    .discountPercentage(ad.getDiscountPercentage())
+                    .bulkAmount(ad.getBulkAmount())
+                .build());
+        }
+        Map<Long, List<PricingRule>> rulesByProduct = new HashMap<>();
+        rules.sort(PRECEDENCE);
+        for(PricingRule rule : rules) {
+            rulesByProduct.computeIfAbsent(rule.getProductId(), productId -> new ArrayList<>()).add(rule);
+        }
+        rulesByProduct.replaceAll((productId, productRules) -> List.copyOf(productRules));
+        return new PricingEngine(Map.copyOf(rulesByProduct));
+    }
+
+    /**
+     * Returns the rules of the given product sorted by precedence.
+     */
+    public List<PricingRule> rulesFor(Long productId) {
+        return rulesByProduct.getOrDefault(productId, Collections.emptyList());
+    }
+
+    public boolean hasRules(Long productId) {
+        return rulesByProduct.containsKey(productId);
+    }
+
+    /**
+     * Prices an order of the given product.
+     *
+     * @param productId the id of the ordered product
+     * @param price the base price of the product
+     * @param productPurchases the amount of previous purchases of the product by the user
+     * @param hasConsumed tells whether the user has already consumed the promotion of a rule
+     * @return the final cost and the applied rules
+     */
+    public PriceQuote price(Long productId, int price, int productPurchases, Predicate<PricingRule> hasConsumed) {
+        int cost = price;
+        List<PricingRule> appliedRules = new ArrayList<>(PricingRule.Kind.values().length);
+        PricingRule.Kind appliedKind = null;
+        for(PricingRule rule : rulesFor(productId)) {
+            // Rules are sorted by kind, so the first eligible rule of each kind is the best one
+            if(rule.getKind() == appliedKind) continue;
+            if(!rule.isEligible(productPurchases, hasConsumed.test(rule))) continue;
+            cost = rule.apply(cost);
+            appliedRules.add(rule);
+            appliedKind = rule.getKind();
+        }
+        return new PriceQuote(cost, appliedRules);
+    }
+
+}
@@ -0,0 +1,45 @@
+package es.urjc.code.daw.marketplace.pricing;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A single promotion compiled for one product. Rules are immutable.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class PricingRule {
+
+    /**
+     * The kind of the promotion, the declaration order is the stacking order.
+     */
+    public enum Kind { ONE_TIME, ACCUMULATIVE }
+
+    private final Long discountId;
+    private final Kind kind;
+    private final Long productId;
+    private final int discountPercentage;
+    // Only meaningful for the accumulative promotions
+    private final int bulkAmount;
+
+    /**
+     * Checks whether the rule applies to a user given their previous purchases of the
+     * product and whether they have already consumed the promotion.
+     */
+    public boolean isEligible(int productPurchases, boolean hasConsumed) {
+        if(kind == Kind.ONE_TIME) return !hasConsumed && productPurchases == 0;
+        return productPurchases >= bulkAmount;
+    }
+
+    /**
+     * Applies the discount to the given cost, rounding down as the orders always did.
+     */
+    public int apply(int cost) {
+        return ((100 - discountPercentage) * cost) / 100;
+    }
+
+}
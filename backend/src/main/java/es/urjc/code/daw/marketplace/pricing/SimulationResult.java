@@ -0,0 +1,25 @@
+package es.urjc.code.daw.marketplace.pricing;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The projected outcome of a pricing rule over a range of historical orders. Both
+ * revenues only account for the placement charges at the list price of the time.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class SimulationResult {
+
+    private final long replayedOrders;
+    private final long redemptions;
+    private final long affectedCustomers;
+    private final long actualRevenue;
+    private final long projectedRevenue;
+    private final long elapsedMillis;
+
+}
@@ -0,0 +1,22 @@
+package es.urjc.code.daw.marketplace.repository;
+
+import es.urjc.code.daw.marketplace.domain.ArchivedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO ordered_services_archive (id, final_cost, product_order, user_order, creation_date, expiry_date) " +
+            "SELECT o.id, o.final_cost, o.product_order, o.user_order, o.creation_date, o.expiry_date " +
+            "FROM ordered_services o WHERE o.id IN (:ids)", nativeQuery = true)
+    int copyFromOrders(@Param("ids") Collection<Long> orderIds);
+
+    @Modifying
+    @Query("delete from ArchivedOrder a where a.userId = :userId")
+    int deleteAllByUserId(@Param("userId") Long userId);
+
+}
@@ -3,30 +3,52 @@ package es.urjc.code.daw.marketplace.repository;
 import es.urjc.code.daw.marketplace.domain.Order;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
-public interface OrderRepository extends JpaRepository<Order, Long>, PagingAndSortingRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, PagingAndSortingRepository<Order, Long>, OrderRepositoryCustom {
 
-    @Query("select count(o) from Order o where o.creationDate between :startDate and :endDate")
-    Integer countAllBetweenDates(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
+    @Query("select o from Order o where o.user.id = :userId")
+    List<Order> findAllOrdersByUserId(@Param("userId") Long userId);
 
-    @Query("select count(o) from Order o where o.product.category = :category and o.creationDate between :startDate and :endDate")
-    Integer countAllBetweenDatesByCategory(@Param("category") String category, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+    @Query("select o from Order o where o.expiryDate > :from and o.expiryDate <= :to")
+    List<Order> findAllExpiringBetween(@Param("from") Date from, @Param("to") Date to);
 
-    @Query("select sum(o.finalCost) from Order o")
-    Long computeTotalAccumulatedCapital();
+    @Query("select o from Order o join fetch o.user join fetch o.product where o.id in :ids")
+    List<Order> findAllWithUserAndProductByIds(@Param("ids") Collection<Long> ids);
 
-    @Query("select count(o) from Order o where o.product.id = :productId and o.user.id = :userId")
-    Integer countConcreteProductPurchasesGivenUser(@Param("productId") Long productId, @Param("userId") Long userId);
+    @Query("select o.id from Order o where o.id in :ids and o.user.id = :userId")
+    List<Long> findOwnedOrderIds(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
 
-    @Query("select o from Order o where o.user.id = :userId")
-    List<Order> findAllOrdersByUserId(@Param("userId") Long userId);
+    @Query("select o.id, p from Order o join o.product p where o.id in :ids and (:userId is null or o.user.id = :userId)")
+    List<Object[]> findOrderedProducts(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
 
-    @Query("select o from Order o where o.user.id = :userId")
-    List<Order> findAllOrdersByUserId(@Param("userId") Long userId, Pageable pageable);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE ordered_services o SET " +
+            "o.final_cost = o.final_cost + :price * :months, " +
+            "o.expiry_date = DATE_ADD(GREATEST(o.expiry_date, :now), INTERVAL :months MONTH), " +
+            "o.version = o.version + 1 " +
+            "WHERE o.id IN (:ids)", nativeQuery = true)
+    int renewOrders(@Param("ids") Collection<Long> ids, @Param("months") Integer months, @Param("price") Integer price, @Param("now") Date now);
+
+    @Query("select o.id from Order o where o.id in :ids and o.expiryDate > :now")
+    List<Long> findActiveOrderIds(@Param("ids") Collection<Long> ids, @Param("now") Date now);
+
+    // Orders that already expired keep their expiry date
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Order o set o.expiryDate = :now, o.version = o.version + 1 where o.id in :ids and o.expiryDate > :now")
+    int cancelOrders(@Param("ids") Collection<Long> ids, @Param("now") Date now);
+
+    @Query("select o.id from Order o where o.expiryDate < :cutoff order by o.id asc")
+    List<Long> findArchivableOrderIds(@Param("cutoff") Date cutoff, Pageable pageable);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Order o where o.id in :ids")
+    int deleteAllByIds(@Param("ids") Collection<Long> ids);
 
 }
@@ -0,0 +1,17 @@
+package es.urjc.code.daw.marketplace.repository;
+
+import java.util.Date;
+
+/**
+ * The order queries that must take the archived orders into account. The
+ * archive is only queried when the requested range may contain archived orders.
+ */
+public interface OrderRepositoryCustom {
+
+    Integer countAllBetweenDates(Date startDate, Date endDate);
+
+    Integer countAllBetweenDatesByCategory(String category, Date startDate, Date endDate);
+
+    Long computeTotalAccumulatedCapital();
+
+}
@@ -0,0 +1,62 @@
+package es.urjc.code.daw.marketplace.repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Date;
+
+/**
+ * The implementation of the {@link OrderRepositoryCustom} fragment. Every archived
+ * order was created before the newest archived creation date (an indexed lookup),
+ * so ranges starting after it are answered by the hot table alone.
+ */
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Integer countAllBetweenDates(Date startDate, Date endDate) {
+        long count = entityManager.createQuery("select count(o) from Order o where o.creationDate between :startDate and :endDate", Long.class)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getSingleResult();
+        if(archiveMayContain(startDate)) {
+            count += entityManager.createQuery("select count(a) from ArchivedOrder a where a.creationDate between :startDate and :endDate", Long.class)
+                    .setParameter("startDate", startDate)
+                    .setParameter("endDate", endDate)
+                    .getSingleResult();
+        }
+        return (int) count;
+    }
+
+    @Override
+    public Integer countAllBetweenDatesByCategory(String category, Date startDate, Date endDate) {
+        long count = entityManager.createQuery("select count(o) from Order o where o.product.category = :category and o.creationDate between :startDate and :endDate", Long.class)
+                .setParameter("category", category)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getSingleResult();
+        if(archiveMayContain(startDate)) {
+            count += entityManager.createQuery("select count(a) from ArchivedOrder a, Product p where p.id = a.productId and p.category = :category and a.creationDate between :startDate and :endDate", Long.class)
+                    .setParameter("category", category)
+                    .setParameter("startDate", startDate)
+                    .setParameter("endDate", endDate)
+                    .getSingleResult();
+        }
+        return (int) count;
+    }
+
+    @Override
+    public Long computeTotalAccumulatedCapital() {
+        Long hot = entityManager.createQuery("select sum(o.finalCost) from Order o", Long.class).getSingleResult();
+        Long archived = entityManager.createQuery("select sum(a.finalCost) from ArchivedOrder a", Long.class).getSingleResult();
+        if(hot == null && archived == null) return null;
+        return (hot != null ? hot : 0L) + (archived != null ? archived : 0L);
+    }
+
+    private boolean archiveMayContain(Date startDate) {
+        Date newestArchived = entityManager.createQuery("select max(a.creationDate) from ArchivedOrder a", Date.class).getSingleResult();
+        return newestArchived != null && !newestArchived.before(startDate);
+    }
+
+}
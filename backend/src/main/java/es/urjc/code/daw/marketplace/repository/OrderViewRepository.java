@@ -0,0 +1,49 @@
+package es.urjc.code.daw.marketplace.repository;
+
+import es.urjc.code.daw.marketplace.domain.OrderView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderViewRepository extends JpaRepository<OrderView, Long> {
+
+    @Query("select v from OrderView v where v.userId = :userId order by v.orderId asc")
+    List<OrderView> findAllByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE order_view v JOIN ordered_services o ON o.id = v.order_id " +
+            "SET v.expiry_date = o.expiry_date WHERE v.order_id IN (:ids)", nativeQuery = true)
+    int refreshExpiryDates(@Param("ids") Collection<Long> orderIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update OrderView v set v.category = :category, v.ram = :ram, v.cores = :cores, " +
+            "v.storage = :storage, v.transfer = :transfer where v.productId = :productId")
+    int refreshProductDetails(@Param("productId") Long productId,
+                              @Param("category") String category,
+                              @Param("ram") String ram,
+                              @Param("cores") String cores,
+                              @Param("storage") String storage,
+                              @Param("transfer") String transfer);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE order_view v JOIN products p ON p.id = v.product_id " +
+            "SET v.category = p.category, v.ram = p.ram, v.cores = p.cores, v.storage = p.storage, v.transfer = p.transfer " +
+            "WHERE v.product_id IN (:productIds)", nativeQuery = true)
+    int refreshProductDetailsOf(@Param("productIds") Collection<Long> productIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO order_view (order_id, user_id, product_id, category, ram, cores, storage, transfer, creation_date, expiry_date) " +
+            "SELECT o.id, o.user_order, p.id, p.category, p.ram, p.cores, p.storage, p.transfer, o.creation_date, o.expiry_date " +
+            "FROM ordered_services o JOIN products p ON p.id = o.product_order " +
+            "WHERE NOT EXISTS (SELECT 1 FROM order_view v WHERE v.order_id = o.id)", nativeQuery = true)
+    int backfill();
+
+    @Modifying
+    @Query("delete from OrderView v where v.userId = :userId")
+    int deleteAllByUserId(@Param("userId") Long userId);
+
+}
@@ -5,15 +5,47 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
-import java.util.Optional;
+import org.springframework.data.repository.query.Param;
+import javax.transaction.Transactional;
+import java.util.Date;
+import java.util.List;
 
 public interface OtdRepository extends JpaRepository<OneTimeDiscount, Long>, PagingAndSortingRepository<OneTimeDiscount, Long> {
 
-    @Query(value = "SELECT * FROM one_time_discounts WHERE enabled = true ORDER BY id DESC LIMIT 1", nativeQuery = true)
-    Optional<OneTimeDiscount> findCurrentlyActiveOtd();
+    @Query(value = "SELECT * FROM one_time_discounts WHERE enabled = true AND start <= :now AND (stop IS NULL OR stop > :now) ORDER BY id DESC", nativeQuery = true)
+    List<OneTimeDiscount> findAllCurrentlyActiveOtds(@Param("now") Date now);
+
+    @Query(value = "SELECT start FROM one_time_discounts WHERE enabled = true AND start > :now " +
+                   "UNION SELECT stop FROM one_time_discounts WHERE enabled = true AND stop > :now", nativeQuery = true)
+    List<Date> findBoundariesAfter(@Param("now") Date now);
+
+    // Only the enabled rows are touched through the (enabled, id) index, which only holds the
+    // current and upcoming discounts since the expired ones are disabled at their stop boundary
+    @Modifying
+    @Query(value = "UPDATE one_time_discounts SET enabled = false WHERE enabled = true AND start <= :now AND (stop IS NULL OR stop > :now)", nativeQuery = true)
+    int disableActiveOtds(@Param("now") Date now);
+
+    // Runs at the boundaries, after the changes that scheduled them were committed
+    @Modifying
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @Query(value = "UPDATE one_time_discounts SET enabled = false WHERE enabled = true AND stop <= :now", nativeQuery = true)
+    int disableExpiredOtds(@Param("now") Date now);
+
+    @Modifying
+    @Query(value = "UPDATE one_time_discounts SET enabled = false WHERE id = :id AND enabled = true", nativeQuery = true)
+    int disableOtd(@Param("id") Long id);
+
+    // The discounts queued for a later (or an earlier) window are kept
+    @Modifying
+    @Query(value = "UPDATE one_time_discounts SET enabled = false WHERE enabled = true " +
+                   "AND (stop IS NULL OR stop > :start) AND (:stop IS NULL OR start < :stop)", nativeQuery = true)
+    int disableOverlappingOtds(@Param("start") Date start, @Param("stop") Date stop);
+
+    @Query(value = "SELECT user_id FROM otd_user WHERE otd_id = :discountId", nativeQuery = true)
+    List<Number> findConsumerIds(@Param("discountId") Long discountId);
 
     @Modifying
-    @Query(value = "UPDATE OneTimeDiscount otd SET otd.enabled = false")
-    void disableActiveOtd();
+    @Query(value = "INSERT IGNORE INTO otd_user (otd_id, user_id) VALUES (:discountId, :userId)", nativeQuery = true)
+    int addConsumer(@Param("discountId") Long discountId, @Param("userId") Long userId);
 
 }
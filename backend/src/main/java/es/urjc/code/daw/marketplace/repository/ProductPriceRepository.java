@@ -0,0 +1,22 @@
+package es.urjc.code.daw.marketplace.repository;
+
+import es.urjc.code.daw.marketplace.domain.ProductPrice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Date;
+import java.util.List;
+
+public interface ProductPriceRepository extends JpaRepository<ProductPrice, ProductPrice.Key> {
+
+    @Query("select p from ProductPrice p order by p.productId asc, p.validFrom asc")
+    List<ProductPrice> findAllOrdered();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO product_prices (product_id, valid_from, price) " +
+            "SELECT p.id, :since, p.price FROM products p WHERE p.price IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM product_prices pp WHERE pp.product_id = p.id)", nativeQuery = true)
+    int seedMissing(@Param("since") Date since);
+
+}
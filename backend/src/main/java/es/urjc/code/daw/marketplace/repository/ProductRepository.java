@@ -4,6 +4,7 @@ import es.urjc.code.daw.marketplace.domain.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long>, PagingAndSortingRepository<Product, Long> {
@@ -11,4 +12,22 @@ public interface ProductRepository extends JpaRepository<Product, Long>, PagingA
     @Query("select distinct p.category from Product p")
     List<String> findAllCategories();
 
+    @Query("select p from Product p where p.ramBytes between :min and :max order by p.ramBytes asc")
+    List<Product> findAllByRamBetween(@Param("min") Long minBytes, @Param("max") Long maxBytes);
+
+    @Query("select p from Product p where p.coreCount between :min and :max order by p.coreCount asc")
+    List<Product> findAllByCoresBetween(@Param("min") Integer minCores, @Param("max") Integer maxCores);
+
+    @Query("select p from Product p where p.storageBytes between :min and :max order by p.storageBytes asc")
+    List<Product> findAllByStorageBetween(@Param("min") Long minBytes, @Param("max") Long maxBytes);
+
+    @Query("select p from Product p where p.transferBytes between :min and :max order by p.transferBytes asc")
+    List<Product> findAllByTransferBetween(@Param("min") Long minBytes, @Param("max") Long maxBytes);
+
+    @Query("select p from Product p where p.category = :category and p.price <= :maxPrice order by p.price asc")
+    List<Product> findAllByCategoryAndMaxPrice(@Param("category") String category, @Param("maxPrice") Integer maxPrice);
+
+    @Query("select p from Product p where p.ramBytes is null or p.coreCount is null or p.storageBytes is null or p.transferBytes is null")
+    List<Product> findAllWithoutNumericSpecs();
+
 }
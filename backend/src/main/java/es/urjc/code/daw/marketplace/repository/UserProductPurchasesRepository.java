@@ -0,0 +1,42 @@
+package es.urjc.code.daw.marketplace.repository;
+
+import es.urjc.code.daw.marketplace.domain.UserProductPurchases;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
+
+public interface UserProductPurchasesRepository extends JpaRepository<UserProductPurchases, UserProductPurchases.Key> {
+
+    @Query(value = "SELECT count FROM user_product_purchases WHERE user_id = :userId AND product_id = :productId", nativeQuery = true)
+    Integer findCount(@Param("userId") Long userId, @Param("productId") Long productId);
+
+    @Modifying
+    @Query(value = "INSERT INTO user_product_purchases (user_id, product_id, count) VALUES (:userId, :productId, 1) " +
+            "ON DUPLICATE KEY UPDATE count = count + 1", nativeQuery = true)
+    int increment(@Param("userId") Long userId, @Param("productId") Long productId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO user_product_purchases (user_id, product_id, count) " +
+            "SELECT o.user_id, o.product_id, COUNT(*) FROM (" +
+            "SELECT user_order AS user_id, product_order AS product_id FROM ordered_services " +
+            "UNION ALL SELECT user_order, product_order FROM ordered_services_archive" +
+            ") o GROUP BY o.user_id, o.product_id " +
+            "ON DUPLICATE KEY UPDATE count = VALUES(count)", nativeQuery = true)
+    int backfill();
+
+    @Query(value = "SELECT product_id FROM user_product_purchases WHERE user_id = :userId", nativeQuery = true)
+    List<Number> findProductIds(@Param("userId") Long userId);
+
+    // Every pair of distinct products bought by the same user, along with how many users bought both
+    @Query(value = "SELECT a.product_id, b.product_id, COUNT(*) FROM user_product_purchases a " +
+            "JOIN user_product_purchases b ON b.user_id = a.user_id AND b.product_id <> a.product_id " +
+            "GROUP BY a.product_id, b.product_id", nativeQuery = true)
+    List<Object[]> findCoPurchases();
+
+    @Modifying
+    @Query("delete from UserProductPurchases p where p.userId = :userId")
+    int deleteAllByUserId(@Param("userId") Long userId);
+
+}
@@ -13,6 +13,11 @@ public interface UserRepository extends JpaRepository<User, Long>, PagingAndSort
 
     User findUserByEmail(String email);
 
+    @Query("select distinct u.profilePictureFilename from User u where u.profilePictureFilename is not null")
+    List<String> findAllProfilePictureFilenames();
+
+    boolean existsByProfilePictureFilename(String profilePictureFilename);
+
     @Query("select u from User u order by u.id asc")
     List<User> findAllUsers(Pageable pageable);
 
@@ -0,0 +1,100 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.AccumulativeDiscount;
+import es.urjc.code.daw.marketplace.domain.OneTimeDiscount;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.pricing.PricingEngine;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable, versioned snapshot of the currently active discounts, the target
+ * products of the newest ones and the pricing rules compiled from all of them. The
+ * entities held are detached copies (without consumers nor orders), so the snapshot
+ * can be freely shared between threads.
+ */
+public final class ActiveDiscounts {
+
+    public static final ActiveDiscounts EMPTY = new ActiveDiscounts(0, List.of(), List.of(), null, null);
+
+    private final long version;
+    private final List<OneTimeDiscount> otds;
+    private final List<AccumulativeDiscount> ads;
+    private final Product otdProduct;
+    private final Product adProduct;
+    private final PricingEngine pricingEngine;
+
+    /**
+     * @param otds the active one time discounts, newest first
+     * @param ads the active accumulative discounts, newest first
+     * @param otdProduct the target product of the newest one time discount
+     * @param adProduct the target product of the newest accumulative discount
+     */
+    public ActiveDiscounts(long version,
+                           List<OneTimeDiscount> otds,
+                           List<AccumulativeDiscount> ads,
+                           Product otdProduct,
+                           Product adProduct) {
+        this.version = version;
+        this.otds = otds.stream().map(ActiveDiscounts::copyOf).collect(Collectors.toUnmodifiableList());
+        this.ads = ads.stream().map(ActiveDiscounts::copyOf).collect(Collectors.toUnmodifiableList());
+        this.otdProduct = otdProduct == null ? null : otdProduct.detachedCopy();
+        this.adProduct = adProduct == null ? null : adProduct.detachedCopy();
+        this.pricingEngine = PricingEngine.compile(this.otds, this.ads);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public PricingEngine getPricingEngine() {
+        return pricingEngine;
+    }
+
+    public Optional<OneTimeDiscount> getOtd() {
+        return otds.stream().findFirst().map(ActiveDiscounts::copyOf);
+    }
+
+    public Optional<Product> getOtdProduct() {
+        return Optional.ofNullable(otdProduct).map(Product::detachedCopy);
+    }
+
+    public Optional<AccumulativeDiscount> getAd() {
+        return ads.stream().findFirst().map(ActiveDiscounts::copyOf);
+    }
+
+    public Optional<Product> getAdProduct() {
+        return Optional.ofNullable(adProduct).map(Product::detachedCopy);
+    }
+
+    // Entities are mutable, so copies are handed out to keep the snapshot intact
+    private static OneTimeDiscount copyOf(OneTimeDiscount otd) {
+        return OneTimeDiscount.builder()
+                .id(otd.getId())
+                .enabled(otd.getEnabled())
+                .productId(otd.getProductId())
+                .discountPercentage(otd.getDiscountPercentage())
+                .start(copyOf(otd.getStart()))
+                .stop(copyOf(otd.getStop()))
+            .build();
+    }
+
+    private static AccumulativeDiscount copyOf(AccumulativeDiscount ad) {
+        return AccumulativeDiscount.builder()
+                .id(ad.getId())
+                .enabled(ad.getEnabled())
+                .productId(ad.getProductId())
+                .bulkAmount(ad.getBulkAmount())
+                .discountPercentage(ad.getDiscountPercentage())
+                .start(copyOf(ad.getStart()))
+                .stop(copyOf(ad.getStop()))
+            .build();
+    }
+
+    private static Date copyOf(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
+}
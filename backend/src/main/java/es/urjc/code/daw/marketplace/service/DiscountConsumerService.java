@@ -0,0 +1,53 @@
+package es.urjc.code.daw.marketplace.service;
+
+import java.util.Collection;
+
+public interface DiscountConsumerService {
+
+    /**
+     * Checks whether the given user has already consumed the given one time discount.
+     */
+    boolean hasConsumedOtd(Long otdId, Long userId);
+
+    /**
+     * Marks the given user as a consumer of the given one time discount once
+     * the current transaction (if any) commits.
+     */
+    void addOtdConsumer(Long otdId, Long userId);
+
+    /**
+     * Checks whether the given user has already consumed the given accumulative discount.
+     */
+    boolean hasConsumedAd(Long adId, Long userId);
+
+    /**
+     * Marks the given user as a consumer of the given accumulative discount once
+     * the current transaction (if any) commits.
+     */
+    void addAdConsumer(Long adId, Long userId);
+
+    /**
+     * (Re)builds the consumers of the given one time discount from the database once
+     * the current transaction (if any) commits. The other discounts are left untouched.
+     *
+     * @param otdId the id of the activated one time discount
+     */
+    void activateOtd(Long otdId);
+
+    /**
+     * (Re)builds the consumers of the given accumulative discount from the database once
+     * the current transaction (if any) commits. The other discounts are left untouched.
+     *
+     * @param adId the id of the activated accumulative discount
+     */
+    void activateAd(Long adId);
+
+    /**
+     * Drops the consumers of every discount which is not among the given active ones.
+     *
+     * @param otdIds the ids of the active one time discounts
+     * @param adIds the ids of the active accumulative discounts
+     */
+    void retainActive(Collection<Long> otdIds, Collection<Long> adIds);
+
+}
@@ -0,0 +1,101 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.repository.AdRepository;
+import es.urjc.code.daw.marketplace.repository.OtdRepository;
+import es.urjc.code.daw.marketplace.util.RoaringBitmap;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
+import org.springframework.stereotype.Service;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An implementation of the {@link DiscountConsumerService} which keeps a compressed
+ * bitmap of consumer ids per active discount (any number of them may be active at
+ * once). The bitmaps are built from the join tables on activation (or on first use)
+ * and then only updated in memory, so the consumers collection of a discount never
+ * needs to be loaded.
+ */
+@Service
+public class DiscountConsumerServiceImpl implements DiscountConsumerService {
+
+    private final OtdRepository otdRepository;
+    private final AdRepository adRepository;
+
+    private final Map<Long, RoaringBitmap> otdConsumers = new ConcurrentHashMap<>();
+    private final Map<Long, RoaringBitmap> adConsumers = new ConcurrentHashMap<>();
+
+    public DiscountConsumerServiceImpl(OtdRepository otdRepository, AdRepository adRepository) {
+        this.otdRepository = otdRepository;
+        this.adRepository = adRepository;
+    }
+
+    @Override
+    public boolean hasConsumedOtd(Long otdId, Long userId) {
+        return contains(otdConsumers.computeIfAbsent(otdId, this::loadOtdConsumers), userId);
+    }
+
+    @Override
+    public void addOtdConsumer(Long otdId, Long userId) {
+        TransactionUtils.afterCommit(() -> add(otdConsumers.computeIfAbsent(otdId, this::loadOtdConsumers), userId));
+    }
+
+    @Override
+    public boolean hasConsumedAd(Long adId, Long userId) {
+        return contains(adConsumers.computeIfAbsent(adId, this::loadAdConsumers), userId);
+    }
+
+    @Override
+    public void addAdConsumer(Long adId, Long userId) {
+        TransactionUtils.afterCommit(() -> add(adConsumers.computeIfAbsent(adId, this::loadAdConsumers), userId));
+    }
+
+    @Override
+    public void activateOtd(Long otdId) {
+        TransactionUtils.afterCommit(() -> activate(otdConsumers, otdId, this::loadOtdConsumers));
+    }
+
+    @Override
+    public void activateAd(Long adId) {
+        TransactionUtils.afterCommit(() -> activate(adConsumers, adId, this::loadAdConsumers));
+    }
+
+    @Override
+    public void retainActive(Collection<Long> otdIds, Collection<Long> adIds) {
+        otdConsumers.keySet().retainAll(otdIds);
+        adConsumers.keySet().retainAll(adIds);
+    }
+
+    private RoaringBitmap loadOtdConsumers(Long otdId) {
+        return asBitmap(otdRepository.findConsumerIds(otdId));
+    }
+
+    private RoaringBitmap loadAdConsumers(Long adId) {
+        return asBitmap(adRepository.findConsumerIds(adId));
+    }
+
+    private static void activate(Map<Long, RoaringBitmap> consumers, Long activeId, Function<Long, RoaringBitmap> loader) {
+        consumers.put(activeId, loader.apply(activeId));
+    }
+
+    private static RoaringBitmap asBitmap(List<Number> ids) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        ids.forEach(id -> bitmap.add(id.longValue()));
+        return bitmap;
+    }
+
+    private static boolean contains(RoaringBitmap bitmap, Long userId) {
+        synchronized (bitmap) {
+            return bitmap.contains(userId);
+        }
+    }
+
+    private static void add(RoaringBitmap bitmap, Long userId) {
+        synchronized (bitmap) {
+            bitmap.add(userId);
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package es.urjc.code.daw.marketplace.service;
+
+public interface OrderArchivalService {
+
+    /**
+     * Moves the orders that expired long ago to the archive table
+     * in chunks (each chunk in its own short transaction).
+     *
+     * @return the amount of archived orders
+     */
+    int archiveExpiredOrders();
+
+}
@@ -0,0 +1,71 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.config.SchedulingProperties;
+import es.urjc.code.daw.marketplace.repository.ArchivedOrderRepository;
+import es.urjc.code.daw.marketplace.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * An implementation of the {@link OrderArchivalService}. Each chunk copies the
+ * orders to the archive and removes them from the hot table within a single short
+ * transaction, so no long lived locks are held. Their listing rows are kept, so the
+ * archived orders are still listed (and their receipts served) to their owners.
+ */
+@Service
+public class OrderArchivalServiceImpl implements OrderArchivalService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderArchivalServiceImpl.class);
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SchedulingProperties schedulingProperties;
+
+    public OrderArchivalServiceImpl(OrderRepository orderRepository,
+                                    ArchivedOrderRepository archivedOrderRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    SchedulingProperties schedulingProperties) {
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.schedulingProperties = schedulingProperties;
+    }
+
+    @Override
+    @Scheduled(cron = "${scheduling.archive.cron}")
+    public int archiveExpiredOrders() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Europe/Madrid"));
+        calendar.add(Calendar.MONTH, -schedulingProperties.getArchiveExpiredMonths());
+        final Date cutoff = calendar.getTime();
+        final int chunkSize = schedulingProperties.getArchiveChunkSize();
+
+        int archived = 0;
+        int moved;
+        do {
+            Integer chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = orderRepository.findArchivableOrderIds(cutoff, PageRequest.of(0, chunkSize));
+                if(ids.isEmpty()) return 0;
+                archivedOrderRepository.copyFromOrders(ids);
+                orderRepository.deleteAllByIds(ids);
+                return ids.size();
+            });
+            moved = chunk != null ? chunk : 0;
+            archived += moved;
+        } while(moved == chunkSize);
+
+        final String loggerMsg = String.format("[OrderArchivalService] Archived %d orders expired before %s", archived, cutoff);
+        LOGGER.info(loggerMsg);
+        return archived;
+    }
+
+}
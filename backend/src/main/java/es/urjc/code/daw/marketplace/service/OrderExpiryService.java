@@ -0,0 +1,21 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Order;
+
+public interface OrderExpiryService {
+
+    /**
+     * Schedules (or reschedules) the expiry and the renewal reminder
+     * events of the given order according to its current expiry date, once the
+     * current transaction (if any) commits.
+     *
+     * @param order the order that has been placed, renewed or cancelled
+     */
+    void track(Order order);
+
+    /**
+     * Advances the expiry timing wheel and dispatches the fired events.
+     */
+    void tick();
+
+}
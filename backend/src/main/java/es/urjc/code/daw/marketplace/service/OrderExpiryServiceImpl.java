@@ -0,0 +1,203 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.config.SchedulingProperties;
+import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.journal.OrderEvent;
+import es.urjc.code.daw.marketplace.repository.OrderRepository;
+import es.urjc.code.daw.marketplace.util.EmailMessageFactory;
+import es.urjc.code.daw.marketplace.util.TimingWheel;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * An implementation of the {@link OrderExpiryService} backed by an in-process
+ * {@link TimingWheel}. Only the orders expiring within the configured horizon are
+ * kept in the wheel, the horizon is extended with indexed range queries over the
+ * expiry date so the orders table is never scanned as a whole. The fired events are
+ * handed in batches to a dedicated thread which sends the emails, so slow mail delivery
+ * never holds back the scheduler.
+ */
+@Service
+public class OrderExpiryServiceImpl implements OrderExpiryService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderExpiryServiceImpl.class);
+
+    private final OrderRepository orderRepository;
+    private final EmailService emailService;
+    private final OrderJournalService orderJournalService;
+    private final long horizonMillis;
+    private final long reminderMillis;
+
+    private final TimingWheel<ExpiryEvent> wheel;
+    private final Map<Long, List<TimingWheel.Timeout<ExpiryEvent>>> pending = new HashMap<>();
+    // The sequence number of the last track of each order, while a horizon extension may be running
+    private final Map<Long, Long> trackedSequences = new HashMap<>();
+    private long trackSequence;
+    private long loadedUntil;
+    // The end of the horizon being loaded, tracks up to it are scheduled right away
+    private long loadingUntil;
+    private final ExecutorService dispatcher;
+
+    public OrderExpiryServiceImpl(OrderRepository orderRepository,
+                                  EmailService emailService,
+                                  OrderJournalService orderJournalService,
+                                  SchedulingProperties schedulingProperties) {
+        this.orderRepository = orderRepository;
+        this.emailService = emailService;
+        this.orderJournalService = orderJournalService;
+        this.horizonMillis = TimeUnit.HOURS.toMillis(schedulingProperties.getExpiryHorizonHours());
+        this.reminderMillis = TimeUnit.DAYS.toMillis(schedulingProperties.getExpiryReminderDays());
+        this.wheel = new TimingWheel<>(schedulingProperties.getExpiryTickMillis(), System.currentTimeMillis());
+        this.loadedUntil = System.currentTimeMillis();
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadHorizon() {
+        extendHorizon(System.currentTimeMillis());
+    }
+
+    @Override
+    public void track(Order order) {
+        if(order.getId() == null || order.getExpiryDate() == null) return;
+        Long orderId = order.getId();
+        long expiryMillis = order.getExpiryDate().getTime();
+        // Once committed, so a horizon extension never reads an expiry older than the tracked one
+        TransactionUtils.afterCommit(() -> {
+            synchronized (wheel) {
+                cancelPending(orderId);
+                trackedSequences.put(orderId, ++trackSequence);
+                // Orders beyond the loaded horizon are picked up once the horizon reaches them
+                if(expiryMillis > Math.max(loadedUntil, loadingUntil)) return;
+                schedule(orderId, expiryMillis, System.currentTimeMillis());
+            }
+        });
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${scheduling.expiry.tick_millis}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        List<ExpiryEvent> fired = new LinkedList<>();
+        synchronized (wheel) {
+            wheel.advance(now, event -> {
+                fired.add(event);
+                List<TimingWheel.Timeout<ExpiryEvent>> timeouts = pending.get(event.orderId);
+                if(timeouts != null) {
+                    timeouts.removeIf(timeout -> !timeout.isPending());
+                    if(timeouts.isEmpty()) pending.remove(event.orderId);
+                }
+            });
+        }
+        if(now + horizonMillis / 2 > loadedUntil) extendHorizon(now);
+        if(!fired.isEmpty()) dispatcher.execute(() -> dispatch(fired));
+    }
+
+    private void extendHorizon(long now) {
+        Date from;
+        Date to = new Date(now + horizonMillis);
+        long sequence;
+        synchronized (wheel) {
+            from = new Date(loadedUntil);
+            sequence = trackSequence;
+            loadingUntil = Math.max(loadingUntil, to.getTime());
+        }
+        List<Order> orders = orderRepository.findAllExpiringBetween(from, to);
+        synchronized (wheel) {
+            for(Order order : orders) {
+                // An order tracked after the query (renewed or cancelled meanwhile) is already up to date
+                if(trackedSequences.getOrDefault(order.getId(), 0L) > sequence) continue;
+                cancelPending(order.getId());
+                schedule(order.getId(), order.getExpiryDate().getTime(), now);
+            }
+            trackedSequences.values().removeIf(tracked -> tracked <= sequence);
+            loadedUntil = to.getTime();
+        }
+        final String loggerMsg = String.format("[OrderExpiryService] Loaded %d orders expiring until %s", orders.size(), to);
+        LOGGER.info(loggerMsg);
+    }
+
+    private void schedule(Long orderId, long expiryMillis, long now) {
+        List<TimingWheel.Timeout<ExpiryEvent>> timeouts = new ArrayList<>(2);
+        long reminderAt = expiryMillis - reminderMillis;
+        if(reminderAt > now) {
+            timeouts.add(wheel.schedule(reminderAt, new ExpiryEvent(orderId, expiryMillis, EventType.REMINDER)));
+        }
+        timeouts.add(wheel.schedule(expiryMillis, new ExpiryEvent(orderId, expiryMillis, EventType.EXPIRED)));
+        pending.put(orderId, timeouts);
+    }
+
+    private void cancelPending(Long orderId) {
+        List<TimingWheel.Timeout<ExpiryEvent>> timeouts = pending.remove(orderId);
+        if(timeouts != null) timeouts.forEach(wheel::cancel);
+    }
+
+    private void dispatch(List<ExpiryEvent> events) {
+        // Load every affected order (with its user and product) in a single query
+        Set<Long> ids = events.stream().map(event -> event.orderId).collect(Collectors.toSet());
+        Map<Long, Order> orders = orderRepository.findAllWithUserAndProductByIds(ids).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        for(ExpiryEvent event : events) {
+            Order order = orders.get(event.orderId);
+            // Skip the events that went stale (the order was deleted or its expiry changed meanwhile)
+            if(order == null || Math.abs(order.getExpiryDate().getTime() - event.expiryMillis) >= 1000) continue;
+            try {
+                if(event.type == EventType.REMINDER) {
+                    emailService.sendEmail(
+                            order.getUser().getEmail(),
+                            EmailMessageFactory.newExpiryReminderTitle(order),
+                            EmailMessageFactory.newExpiryReminderMessage(order)
+                    );
+                } else {
+                    orderJournalService.record(OrderEvent.Type.EXPIRED, order, 0);
+                    emailService.sendEmail(
+                            order.getUser().getEmail(),
+                            EmailMessageFactory.newExpiredTitle(order),
+                            EmailMessageFactory.newExpiredMessage(order)
+                    );
+                }
+            } catch(Exception exception) {
+                final String loggerMsg = String.format("[OrderExpiryService] Event dispatch failed for order %d: %s", order.getId(), exception.getLocalizedMessage());
+                LOGGER.error(loggerMsg);
+            }
+        }
+    }
+
+    private enum EventType { REMINDER, EXPIRED }
+
+    private static final class ExpiryEvent {
+
+        private final Long orderId;
+        private final long expiryMillis;
+        private final EventType type;
+
+        private ExpiryEvent(Long orderId, long expiryMillis, EventType type) {
+            this.orderId = orderId;
+            this.expiryMillis = expiryMillis;
+            this.type = type;
+        }
+
+    }
+
+}
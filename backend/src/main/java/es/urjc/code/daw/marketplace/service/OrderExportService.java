@@ -0,0 +1,24 @@
+package es.urjc.code.daw.marketplace.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+public interface OrderExportService {
+
+    enum Format { NDJSON, CSV }
+
+    /**
+     * Streams every order created within the given dates to the output stream,
+     * row by row, in the given format. Memory usage does not depend on the
+     * amount of exported orders.
+     *
+     * @param outputStream the stream where the rows are written
+     * @param format the format of the exported rows
+     * @param from the inclusive lower creation date bound (null for no bound)
+     * @param to the exclusive upper creation date bound (null for no bound)
+     * @return the amount of exported orders
+     */
+    long exportOrders(OutputStream outputStream, Format format, Date from, Date to) throws IOException;
+
+}
@@ -0,0 +1,127 @@
+package es.urjc.code.daw.marketplace.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * An implementation of the {@link OrderExportService} which reads the orders
+ * through a forward-only, read-only JDBC cursor and writes each row as soon as
+ * it is fetched. The export is a plain (non locking) consistent read: the hot and
+ * the archived orders are read by a single statement, so the orders archived while
+ * it runs are neither lost nor exported twice.
+ */
+@Service
+public class OrderExportServiceImpl implements OrderExportService {
+
+    private static final String EXPORT_QUERY = "SELECT o.id, o.user_order, o.product_order, p.category, " +
+            "o.final_cost, o.creation_date, o.expiry_date FROM (" +
+            "SELECT id, user_order, product_order, final_cost, creation_date, expiry_date FROM ordered_services_archive " +
+            "WHERE creation_date >= ? AND creation_date < ? " +
+            "UNION ALL SELECT id, user_order, product_order, final_cost, creation_date, expiry_date FROM ordered_services " +
+            "WHERE creation_date >= ? AND creation_date < ?" +
+            ") o JOIN products p ON p.id = o.product_order ORDER BY o.id";
+
+    private static final String CSV_HEADER = "order_id,user_id,product_id,category,final_cost,creation_date,expiry_date\n";
+    private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+    private static final Timestamp MIN_DATE = Timestamp.valueOf("1000-01-01 00:00:00");
+    private static final Timestamp MAX_DATE = Timestamp.valueOf("9999-12-31 23:59:59");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public OrderExportServiceImpl(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public long exportOrders(OutputStream outputStream, Format format, Date from, Date to) throws IOException {
+        final Timestamp lowerBound = from != null ? new Timestamp(from.getTime()) : MIN_DATE;
+        final Timestamp upperBound = to != null ? new Timestamp(to.getTime()) : MAX_DATE;
+        final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_PATTERN);
+
+        PreparedStatementCreator statementCreator = connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // The MySQL driver streams the rows one by one instead of buffering the whole result set
+            statement.setFetchSize(Integer.MIN_VALUE);
+            for(int offset = 0; offset < 4; offset += 2) {
+                statement.setTimestamp(offset + 1, lowerBound);
+                statement.setTimestamp(offset + 2, upperBound);
+            }
+            return statement;
+        };
+
+        long[] exported = { 0 };
+        if(format == Format.NDJSON) {
+            JsonGenerator generator = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+            RowCallbackHandler handler = resultSet -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("order_id", resultSet.getLong(1));
+                    generator.writeNumberField("user_id", resultSet.getLong(2));
+                    generator.writeNumberField("product_id", resultSet.getLong(3));
+                    generator.writeStringField("category", resultSet.getString(4));
+                    generator.writeNumberField("final_cost", resultSet.getInt(5));
+                    generator.writeStringField("creation_date", formatDate(dateFormat, resultSet.getTimestamp(6)));
+                    generator.writeStringField("expiry_date", formatDate(dateFormat, resultSet.getTimestamp(7)));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    exported[0]++;
+                } catch(IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            };
+            jdbcTemplate.query(statementCreator, handler);
+            generator.flush();
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            RowCallbackHandler handler = resultSet -> {
+                try {
+                    writer.write(Long.toString(resultSet.getLong(1)));
+                    writer.write(',');
+                    writer.write(Long.toString(resultSet.getLong(2)));
+                    writer.write(',');
+                    writer.write(Long.toString(resultSet.getLong(3)));
+                    writer.write(',');
+                    writer.write(escapeCsv(resultSet.getString(4)));
+                    writer.write(',');
+                    writer.write(Integer.toString(resultSet.getInt(5)));
+                    writer.write(',');
+                    writer.write(formatDate(dateFormat, resultSet.getTimestamp(6)));
+                    writer.write(',');
+                    writer.write(formatDate(dateFormat, resultSet.getTimestamp(7)));
+                    writer.write('\n');
+                    exported[0]++;
+                } catch(IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            };
+            jdbcTemplate.query(statementCreator, handler);
+            writer.flush();
+        }
+        return exported[0];
+    }
+
+    private static String formatDate(SimpleDateFormat dateFormat, Timestamp timestamp) {
+        return timestamp != null ? dateFormat.format(timestamp) : "";
+    }
+
+    private static String escapeCsv(String value) {
+        if(value == null) return "";
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+}
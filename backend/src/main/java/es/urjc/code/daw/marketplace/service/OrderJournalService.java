@@ -0,0 +1,32 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.journal.OrderEvent;
+import java.util.function.Consumer;
+
+public interface OrderJournalService {
+
+    /**
+     * Appends the given lifecycle change of the order to the journal. The
+     * record is made durable by the next group commit.
+     *
+     * @param type the type of the lifecycle change
+     * @param order the order that changed
+     * @param value the value associated to the change (see {@link OrderEvent})
+     */
+    void record(OrderEvent.Type type, Order order, int value);
+
+    /**
+     * Replays every journaled event in the order they were appended, i.e.
+     * to rebuild projections such as the statistics.
+     *
+     * @param consumer the consumer that receives each event
+     */
+    void replay(Consumer<OrderEvent> consumer);
+
+    /**
+     * Forces the pending events to disk (group commit).
+     */
+    void flush();
+
+}
@@ -0,0 +1,74 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.config.JournalProperties;
+import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.journal.OrderEvent;
+import es.urjc.code.daw.marketplace.journal.SegmentedJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * An implementation of the {@link OrderJournalService} backed by a {@link SegmentedJournal}.
+ * Recording never fails the order operation, a journal failure is only logged.
+ */
+@Service
+public class OrderJournalServiceImpl implements OrderJournalService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderJournalServiceImpl.class);
+
+    private final SegmentedJournal journal;
+
+    public OrderJournalServiceImpl(JournalProperties journalProperties) throws IOException {
+        this.journal = new SegmentedJournal(
+                Paths.get(journalProperties.getDirectory()),
+                journalProperties.getSegmentSizeMb() * 1024 * 1024
+        );
+    }
+
+    @Override
+    public void record(OrderEvent.Type type, Order order, int value) {
+        OrderEvent event = OrderEvent.builder()
+                .type(type)
+                .timestamp(System.currentTimeMillis())
+                .orderId(order.getId())
+                .userId(order.getUser().getId())
+                .productId(order.getProduct().getId())
+                .value(value)
+                .expiryDate(order.getExpiryDate() != null ? order.getExpiryDate().getTime() : 0L)
+            .build();
+        try {
+            journal.append(OrderEvent.SIZE, event::writeTo);
+        } catch(Exception exception) {
+            final String loggerMsg = String.format("[OrderJournalService] Could not journal %s: %s", event, exception.getLocalizedMessage());
+            LOGGER.error(loggerMsg);
+        }
+    }
+
+    @Override
+    public void replay(Consumer<OrderEvent> consumer) {
+        try {
+            journal.replay(payload -> consumer.accept(OrderEvent.readFrom(payload)));
+        } catch(IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${journal.flush_millis}")
+    public void flush() {
+        journal.flush();
+    }
+
+    @PreDestroy
+    public void close() {
+        journal.close();
+    }
+
+}
@@ -1,7 +1,9 @@
 package es.urjc.code.daw.marketplace.service;
 
 import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.OrderView;
 import org.springframework.data.domain.Pageable;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderService {
@@ -10,8 +12,28 @@ public interface OrderService {
 
     List<Order> findAllOrdersByUserId(Long userId);
 
-    List<Order> findAllOrdersByUserId(Long userId, Pageable pageable);
+    List<OrderView> findOrderViewsByUserId(Long userId, Pageable pageable);
 
     Order saveOrder(Order order);
 
+    /**
+     * Renews every given order by the given amount of months with a single
+     * set-based update. Orders that already expired are renewed from now.
+     *
+     * @param orderIds the identifiers of the orders to be renewed
+     * @param ownerId the owner the orders must belong to (null to skip the check)
+     * @param months the amount of months to renew
+     * @return the orders that have been effectively renewed
+     */
+    List<Order> renewOrders(Collection<Long> orderIds, Long ownerId, int months);
+
+    /**
+     * Cancels every given order with a single set-based update.
+     *
+     * @param orderIds the identifiers of the orders to be cancelled
+     * @param ownerId the owner the orders must belong to (null to skip the check)
+     * @return the orders that have been effectively cancelled
+     */
+    List<Order> cancelOrders(Collection<Long> orderIds, Long ownerId);
+
 }
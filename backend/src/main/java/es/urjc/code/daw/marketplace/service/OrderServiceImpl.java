@@ -1,27 +1,64 @@
 package es.urjc.code.daw.marketplace.service;
 
+import es.urjc.code.daw.marketplace.domain.ArchivedOrder;
 import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.OrderView;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.journal.OrderEvent;
+import es.urjc.code.daw.marketplace.repository.ArchivedOrderRepository;
 import es.urjc.code.daw.marketplace.repository.OrderRepository;
+import es.urjc.code.daw.marketplace.repository.OrderViewRepository;
+import es.urjc.code.daw.marketplace.repository.ProductRepository;
+import es.urjc.code.daw.marketplace.repository.UserRepository;
+import es.urjc.code.daw.marketplace.util.TimeUtils;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import javax.transaction.Transactional;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 @Transactional
 public class OrderServiceImpl implements OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final OrderExpiryService orderExpiryService;
+    private final OrderJournalService orderJournalService;
+    private final PurchaseCounterService purchaseCounterService;
+    private final ProductPriceService productPriceService;
+    private final RelatedProductService relatedProductService;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
 
-    public OrderServiceImpl(OrderRepository orderRepository) {
+    public OrderServiceImpl(OrderRepository orderRepository,
+                            OrderViewRepository orderViewRepository,
+                            OrderExpiryService orderExpiryService,
+                            OrderJournalService orderJournalService,
+                            PurchaseCounterService purchaseCounterService,
+                            ProductPriceService productPriceService,
+                            RelatedProductService relatedProductService,
+                            ArchivedOrderRepository archivedOrderRepository,
+                            UserRepository userRepository,
+                            ProductRepository productRepository) {
         this.orderRepository = orderRepository;
+        this.orderViewRepository = orderViewRepository;
+        this.orderExpiryService = orderExpiryService;
+        this.orderJournalService = orderJournalService;
+        this.purchaseCounterService = purchaseCounterService;
+        this.productPriceService = productPriceService;
+        this.relatedProductService = relatedProductService;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
     }
 
     @Override
     public Order findOrderById(Long id) {
         Optional<Order> optionalOrder = orderRepository.findById(id);
-        return optionalOrder.orElseThrow();
+        // The archived orders are still served (i.e. for their receipts), but they are never saved back
+        return optionalOrder.or(() -> archivedOrderRepository.findById(id).map(this::asOrder)).orElseThrow();
     }
 
     @Override
@@ -30,13 +67,90 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public List<Order> findAllOrdersByUserId(Long userId, Pageable pageable) {
-        return orderRepository.findAllOrdersByUserId(userId, pageable);
+    public List<OrderView> findOrderViewsByUserId(Long userId, Pageable pageable) {
+        return orderViewRepository.findAllByUserId(userId, pageable);
     }
 
     @Override
     public Order saveOrder(Order order) {
-        return orderRepository.saveAndFlush(order);
+        boolean isPlacement = order.getId() == null;
+        Order savedOrder = orderRepository.saveAndFlush(order);
+        orderViewRepository.save(OrderView.of(savedOrder));
+        orderExpiryService.track(savedOrder);
+        if(isPlacement) {
+            Long userId = savedOrder.getUser().getId();
+            Long productId = savedOrder.getProduct().getId();
+            // Only the first purchase of a product makes it co-purchased with the others
+            if(purchaseCounterService.recordPurchase(userId, productId)) {
+                relatedProductService.recordFirstPurchase(userId, productId);
+            }
+            int discountedAmount = productPriceService.priceOf(savedOrder) - savedOrder.getFinalCost();
+            // The journal only learns about the placement once it can no longer be rolled back
+            TransactionUtils.afterCommit(() -> {
+                orderJournalService.record(OrderEvent.Type.PLACED, savedOrder, savedOrder.getFinalCost());
+                if(discountedAmount > 0) orderJournalService.record(OrderEvent.Type.DISCOUNT_APPLIED, savedOrder, discountedAmount);
+            });
+        }
+        return savedOrder;
     }
 
-}
\ No newline at end of file
+    @Override
+    public List<Order> renewOrders(Collection<Long> orderIds, Long ownerId, int months) {
+        if(orderIds.isEmpty()) return Collections.emptyList();
+        // Each order is charged the price its product has at the moment of the renewal,
+        // so the orders are renewed in groups of the same price
+        Date now = TimeUtils.now();
+        Map<Integer, List<Long>> idsByPrice = new HashMap<>();
+        for(Object[] orderedProduct : orderRepository.findOrderedProducts(orderIds, ownerId)) {
+            int price = productPriceService.priceAt((Product) orderedProduct[1], now);
+            idsByPrice.computeIfAbsent(price, key -> new LinkedList<>()).add((Long) orderedProduct[0]);
+        }
+        if(idsByPrice.isEmpty()) return Collections.emptyList();
+        List<Long> ids = new LinkedList<>();
+        idsByPrice.forEach((price, priceIds) -> {
+            orderRepository.renewOrders(priceIds, months, price, now);
+            ids.addAll(priceIds);
+        });
+        return trackUpdatedOrders(ids, OrderEvent.Type.RENEWED, months);
+    }
+
+    @Override
+    public List<Order> cancelOrders(Collection<Long> orderIds, Long ownerId) {
+        Collection<Long> ids = ownedOrderIds(orderIds, ownerId);
+        if(ids.isEmpty()) return Collections.emptyList();
+        Date now = TimeUtils.now();
+        // Orders that already expired are left as they are (neither notified nor journaled again)
+        List<Long> activeIds = orderRepository.findActiveOrderIds(ids, now);
+        if(activeIds.isEmpty()) return orderRepository.findAllWithUserAndProductByIds(ids);
+        orderRepository.cancelOrders(activeIds, now);
+        List<Order> cancelled = trackUpdatedOrders(activeIds, OrderEvent.Type.CANCELLED, 0);
+        return cancelled.size() == ids.size() ? cancelled : orderRepository.findAllWithUserAndProductByIds(ids);
+    }
+
+    private Order asOrder(ArchivedOrder archivedOrder) {
+        return Order.builder()
+                .id(archivedOrder.getId())
+                .finalCost(archivedOrder.getFinalCost())
+                .user(userRepository.findById(archivedOrder.getUserId()).orElseThrow())
+                .product(productRepository.findById(archivedOrder.getProductId()).orElseThrow())
+                .creationDate(archivedOrder.getCreationDate())
+                .expiryDate(archivedOrder.getExpiryDate())
+            .build();
+    }
+
+    private Collection<Long> ownedOrderIds(Collection<Long> orderIds, Long ownerId) {
+        if(orderIds.isEmpty() || ownerId == null) return orderIds;
+        return orderRepository.findOwnedOrderIds(orderIds, ownerId);
+    }
+
+    private List<Order> trackUpdatedOrders(Collection<Long> ids, OrderEvent.Type type, int value) {
+        orderViewRepository.refreshExpiryDates(ids);
+        List<Order> orders = orderRepository.findAllWithUserAndProductByIds(ids);
+        for(Order order : orders) {
+            orderExpiryService.track(order);
+        }
+        TransactionUtils.afterCommit(() -> orders.forEach(order -> orderJournalService.record(type, order, value)));
+        return orders;
+    }
+
+}
@@ -17,6 +17,12 @@ import java.awt.*;
 @Component
 public class PdfExporterServiceImpl implements PdfExporterService {
 
+    private final ProductPriceService productPriceService;
+
+    public PdfExporterServiceImpl(ProductPriceService productPriceService) {
+        this.productPriceService = productPriceService;
+    }
+
     private void writeTableHeader(PdfPTable table) {
         PdfPCell cell = new PdfPCell();
         cell.setBackgroundColor(Color.BLUE);
@@ -87,12 +93,15 @@ public class PdfExporterServiceImpl implements PdfExporterService {
         String storage = order.getProduct().getStorage();
         String transfer = order.getProduct().getTransfer();
 
+        // The price the product had when it was ordered, not its current one
+        int monthlyPrice = productPriceService.priceOf(order);
+
         final String title3 = "Your product details are:";
         Paragraph p3 = new Paragraph(title3, createFontWithSize(12, Color.BLUE));
         p3.setAlignment(Paragraph.ALIGN_CENTER);
         document.add(p3);
 
-        final String title1 = String.format("%s RAM, %s CORES, %s STORAGE and %s TRANSFER", ram, cores, storage, transfer);
+        final String title1 = String.format("%s RAM, %s CORES, %s STORAGE and %s TRANSFER for $%d per month", ram, cores, storage, transfer, monthlyPrice);
         Paragraph p1 = new Paragraph(title1, createFontWithSize(12, Color.BLUE));
         p1.setAlignment(Paragraph.ALIGN_CENTER);
         document.add(p1);
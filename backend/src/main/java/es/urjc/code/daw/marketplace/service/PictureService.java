@@ -1,16 +1,20 @@
 package es.urjc.code.daw.marketplace.service;
 
 import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.storage.CacheStats;
 import org.springframework.web.multipart.MultipartFile;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 
 public interface PictureService {
 
     /**
-     * Stores the given picture for the specified user.
+     * Stores the given picture for the specified user. Pictures are stored by
+     * content, so identical pictures are stored only once.
      *
      * @param userId the given user identifier
      * @param profilePicture the picture to be uploaded for the user
-     * @return the filename of the stored picture
+     * @return the filename of the stored picture (its content hash)
      */
     String savePicture(Long userId, MultipartFile profilePicture);
 
@@ -23,4 +27,34 @@ public interface PictureService {
      */
     String getEncodedPicture(User user);
 
+    /**
+     * Returns the location and metadata of the picture of the user, so it can be
+     * streamed instead of encoded.
+     *
+     * @param user the given user
+     * @param size the size hint in pixels, the smallest thumbnail at least as large is
+     *             returned if there is any (null for the original picture)
+     * @return the stored picture or nothing if the user has no picture
+     */
+    Optional<StoredPicture> findPicture(User user, Integer size);
+
+    /**
+     * Returns the content of the picture of the user, which is served from memory
+     * while the picture is frequently read.
+     *
+     * @param user the given user
+     * @return a read-only buffer with the picture or nothing if the user has no picture
+     */
+    Optional<ByteBuffer> readPicture(User user);
+
+    /**
+     * Returns the counters of the in-memory cache of pictures.
+     */
+    CacheStats getCacheStats();
+
+    /**
+     * Deletes the stored pictures which are no longer referenced by any user.
+     */
+    void sweepPictures();
+
 }
@@ -1,80 +1,163 @@
 package es.urjc.code.daw.marketplace.service;
 
+import es.urjc.code.daw.marketplace.config.PictureProperties;
 import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.repository.UserRepository;
+import es.urjc.code.daw.marketplace.storage.CacheStats;
+import es.urjc.code.daw.marketplace.storage.ContentAddressedStore;
+import es.urjc.code.daw.marketplace.storage.DirectByteBufferCache;
 import lombok.SneakyThrows;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.util.Base64Utils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import javax.transaction.Transactional;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.Objects;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
 
 /**
- * A simple implementation for the {@link PictureService}.
+ * An implementation of the {@link PictureService} backed by a {@link ContentAddressedStore},
+ * where the pictures are immutable. The pictures stored before are still read from the
+ * root of the pictures directory.
  */
 @Service
 @Transactional
 public class PictureServiceImpl implements PictureService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(PictureServiceImpl.class);
+
+    private final PictureProperties pictureProperties;
+    private final ThumbnailService thumbnailService;
+    private final UserRepository userRepository;
+    private final ContentAddressedStore store;
+    // Keyed by picture filename, which never changes its content
+    private final DirectByteBufferCache cache;
+
+    public PictureServiceImpl(PictureProperties pictureProperties,
+                              ThumbnailService thumbnailService,
+                              UserRepository userRepository) throws IOException {
+        this.pictureProperties = pictureProperties;
+        this.thumbnailService = thumbnailService;
+        this.userRepository = userRepository;
+        this.store = new ContentAddressedStore(Paths.get(pictureProperties.getDirectory()));
+        this.cache = new DirectByteBufferCache(pictureProperties.getCacheCapacityBytes(), pictureProperties.getCacheMaxEntryBytes());
+    }
+
     @Override
     public String savePicture(Long userId, MultipartFile profilePicture) {
         Objects.requireNonNull(profilePicture.getOriginalFilename());
 
-        final String BASE_DIR = "user-profile-pictures";
-
         String fileName = StringUtils.cleanPath(profilePicture.getOriginalFilename());
-        String extension = FilenameUtils.getExtension(fileName);
-        String newName = userId + "." + extension;
-
-        Path uploadPath = Paths.get(BASE_DIR + File.separator + newName);
-
-        if (!Files.exists(uploadPath)) {
-            try {
-                Files.createDirectories(uploadPath);
-            } catch(Exception e) {
-                throw new RuntimeException(e);
-            }
-        }
+        String extension = FilenameUtils.getExtension(fileName).toLowerCase(Locale.ROOT);
+        // Only plain extensions end up in the blob id
+        if(!extension.matches("[0-9a-z]{1,8}")) extension = "";
 
+        String blobId;
         try (InputStream inputStream = profilePicture.getInputStream()) {
-            Files.copy(inputStream, uploadPath, StandardCopyOption.REPLACE_EXISTING);
+            blobId = store.put(inputStream, extension);
         } catch (IOException ioe) {
             throw new RuntimeException("Other process is using the image (usually caused by antivirus)");
         }
+        // The list views ask for small variants, which are generated in the background
+        thumbnailService.generateThumbnails(store.resolve(blobId));
+        // The replaced picture is no longer read
+        userRepository.findById(userId)
+                .map(User::getProfilePictureFilename)
+                .filter(filename -> !filename.equals(blobId))
+                .ifPresent(cache::invalidate);
 
-        return newName;
+        return blobId;
     }
 
     @Override
     @SneakyThrows
-    @SuppressWarnings("all")
     public String getEncodedPicture(User user) {
-        if(user.getProfilePictureFilename() != null) {
-            // Find that user's picture
-            final String PICTURES_FOLDER = "user-profile-pictures/";
-            File file = new File(PICTURES_FOLDER + user.getProfilePictureFilename());
-            if(file.exists()) {
-                String mimeType = Files.probeContentType(file.toPath());
-                InputStream targetStream = new FileInputStream(file);
-                StringBuffer builder = new StringBuffer();
-                builder.append("data:");
-                builder.append(mimeType);
-                builder.append(";base64,");
-                builder.append(Base64Utils.encodeToString(IOUtils.toByteArray(targetStream)));
-                return builder.toString();
-            }
+        // Find that user's picture
+        Optional<ByteBuffer> picture = readPicture(user);
+        if(picture.isEmpty()) return "";
+        String mimeType = Files.probeContentType(pathOf(user.getProfilePictureFilename()));
+        ByteBuffer encodedPicture = Base64.getEncoder().encode(picture.get());
+        StringBuilder builder = new StringBuilder();
+        builder.append("data:");
+        builder.append(mimeType);
+        builder.append(";base64,");
+        builder.append(StandardCharsets.US_ASCII.decode(encodedPicture));
+        return builder.toString();
+    }
+
+    @Override
+    public Optional<ByteBuffer> readPicture(User user) {
+        String filename = user.getProfilePictureFilename();
+        if(filename == null) return Optional.empty();
+        try {
+            return Optional.of(cache.get(filename, pathOf(filename)));
+        } catch(NoSuchFileException exception) {
+            return Optional.empty();
+        } catch(IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    @Override
+    public Optional<StoredPicture> findPicture(User user, Integer size) {
+        if(user.getProfilePictureFilename() == null) return Optional.empty();
+        Path original = pathOf(user.getProfilePictureFilename());
+        Path path = size != null ? thumbnailService.findThumbnail(original, size).orElse(original) : original;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if(!attributes.isRegularFile()) return Optional.empty();
+            String contentType = Files.probeContentType(path);
+            return Optional.of(StoredPicture.builder()
+                    .path(path)
+                    .contentType(contentType != null ? contentType : "application/octet-stream")
+                    .size(attributes.size())
+                    .lastModified(attributes.lastModifiedTime().toMillis())
+                    .immutable(ContentAddressedStore.isBlobId(user.getProfilePictureFilename()))
+                .build());
+        } catch(IOException exception) {
+            // The picture was never stored or it is not readable
+            return Optional.empty();
         }
-        return "";
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${pictures.sweep_millis}")
+    public void sweepPictures() {
+        // The reference count of a picture is the amount of users whose picture it is
+        Set<String> referenced = new HashSet<>(userRepository.findAllProfilePictureFilenames());
+        cache.retainAll(referenced::contains);
+        try {
+            // The pictures missing from the snapshot are checked again, they may have been referenced since
+            int deleted = store.sweep(filename -> referenced.contains(filename) || userRepository.existsByProfilePictureFilename(filename),
+                    pictureProperties.getSweepGraceMillis());
+            final String loggerMsg = String.format("[PictureService] Deleted %d unreferenced pictures (cache: %s)", deleted, cache.getStats());
+            LOGGER.info(loggerMsg);
+        } catch(IOException exception) {
+            final String loggerMsg = String.format("[PictureService] Could not sweep the pictures: %s", exception.getLocalizedMessage());
+            LOGGER.error(loggerMsg);
+        }
+    }
+
+    private Path pathOf(String filename) {
+        if(ContentAddressedStore.isBlobId(filename)) return store.resolve(filename);
+        return Paths.get(pictureProperties.getDirectory(), filename);
     }
 
 }
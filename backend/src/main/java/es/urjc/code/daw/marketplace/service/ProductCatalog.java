@@ -0,0 +1,55 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Product;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable, versioned snapshot of the product catalog. The products held are
+ * detached copies (without orders) shared by every reader, so they must never be
+ * modified; a new snapshot is built whenever the catalog changes.
+ */
+public final class ProductCatalog {
+
+    public static final ProductCatalog EMPTY = new ProductCatalog(0, List.of());
+
+    private final long version;
+    private final List<Product> products;
+    private final Map<Long, Product> productsById;
+    private final ProductIndex index;
+
+    public ProductCatalog(long version, Collection<Product> products) {
+        this.version = version;
+        this.products = products.stream().map(Product::detachedCopy).collect(Collectors.toUnmodifiableList());
+        this.productsById = this.products.stream().collect(Collectors.toUnmodifiableMap(Product::getId, Function.identity()));
+        this.index = new ProductIndex(this.products);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public Optional<Product> getProduct(Long id) {
+        return Optional.ofNullable(productsById.get(id));
+    }
+
+    /**
+     * Finds the products that match every criteria of the given query, in the query order.
+     */
+    public List<Product> search(ProductQuery query) {
+        return index.search(query);
+    }
+
+    public boolean isEmpty() {
+        return products.isEmpty();
+    }
+
+}
@@ -0,0 +1,27 @@
+package es.urjc.code.daw.marketplace.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import java.util.List;
+
+/**
+ * The outcome of a product import, which is only applied when there are no errors.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class ProductImportResult {
+
+    private final long insertedProducts;
+    private final long updatedProducts;
+    private final List<String> errors;
+    private final long elapsedMillis;
+
+    public boolean isApplied() {
+        return errors.isEmpty();
+    }
+
+}
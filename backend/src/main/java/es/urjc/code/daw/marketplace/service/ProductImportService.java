@@ -0,0 +1,23 @@
+package es.urjc.code.daw.marketplace.service;
+
+import java.io.IOException;
+import java.io.Reader;
+
+public interface ProductImportService {
+
+    enum Format { NDJSON, CSV }
+
+    /**
+     * Validates the product rows read from the given reader as they are read, and
+     * upserts them in batches within a single transaction: rows with an id update
+     * that (existing) product and rows without one insert a new product. If any row
+     * is not valid nothing is written at all. The catalog views are refreshed once
+     * the import commits.
+     *
+     * @param reader the reader of the rows, CSV rows must be preceded by a header
+     * @param format the format of the rows
+     * @return the amount of inserted and updated products, or the rejected rows
+     */
+    ProductImportResult importProducts(Reader reader, Format format) throws IOException;
+
+}
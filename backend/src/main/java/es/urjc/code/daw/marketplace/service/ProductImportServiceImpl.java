@@ -0,0 +1,293 @@
+package es.urjc.code.daw.marketplace.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.repository.OrderViewRepository;
+import es.urjc.code.daw.marketplace.util.HardwareSpecs;
+import es.urjc.code.daw.marketplace.util.TimeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * An implementation of the {@link ProductImportService}. The rows are validated one
+ * by one while they are read and written through JDBC batches of upserts, so the
+ * import never holds more than one batch in memory. The ids of the new products are
+ * taken in blocks from the same table generator Hibernate uses.
+ */
+@Service
+@Transactional
+public class ProductImportServiceImpl implements ProductImportService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final List<String> COLUMNS = List.of("id", "category", "price", "ram", "cores", "storage", "transfer");
+
+    private static final String UPSERT_QUERY = "INSERT INTO products " +
+            "(id, category, price, ram, cores, storage, transfer, ram_bytes, core_count, storage_bytes, transfer_bytes) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+            "category = VALUES(category), price = VALUES(price), ram = VALUES(ram), cores = VALUES(cores), " +
+            "storage = VALUES(storage), transfer = VALUES(transfer), ram_bytes = VALUES(ram_bytes), " +
+            "core_count = VALUES(core_count), storage_bytes = VALUES(storage_bytes), transfer_bytes = VALUES(transfer_bytes)";
+
+    private static final String PRICE_QUERY = "INSERT INTO product_prices (product_id, valid_from, price) VALUES (?, ?, ?)";
+
+    // The same allocation Hibernate does for a single id, but for a whole block of them
+    private static final String ALLOCATE_IDS_QUERY = "UPDATE hibernate_sequence SET next_val = LAST_INSERT_ID(next_val + ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate allocationTransaction;
+    private final ObjectMapper objectMapper;
+    private final OrderViewRepository orderViewRepository;
+    private final ProductService productService;
+    private final ProductPriceService productPriceService;
+    private final SaleService saleService;
+
+    public ProductImportServiceImpl(DataSource dataSource,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    OrderViewRepository orderViewRepository,
+                                    ProductService productService,
+                                    ProductPriceService productPriceService,
+                                    SaleService saleService) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Ids are allocated in their own short transaction so the generator row is not
+        // locked (blocking every other insert) until the whole import commits
+        this.allocationTransaction = new TransactionTemplate(transactionManager);
+        this.allocationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.orderViewRepository = orderViewRepository;
+        this.productService = productService;
+        this.productPriceService = productPriceService;
+        this.saleService = saleService;
+    }
+
+    @Override
+    // A failed read (like an aborted upload) must also discard the batches already written
+    @Transactional(rollbackOn = Exception.class)
+    public ProductImportResult importProducts(Reader reader, Format format) throws IOException {
+        long startMillis = System.currentTimeMillis();
+        ProductCatalog catalog = productService.getCatalog();
+        Timestamp now = new Timestamp(TimeUtils.now().getTime());
+        BufferedReader lines = new BufferedReader(reader);
+
+        List<String> columns = COLUMNS;
+        int lineNumber = 0;
+        if(format == Format.CSV) {
+            String header = lines.readLine();
+            lineNumber++;
+            columns = header != null ? splitCsv(header.toLowerCase(Locale.ROOT)) : List.of();
+            if(!columns.containsAll(COLUMNS.subList(1, COLUMNS.size()))) {
+                return rejected(startMillis, "The CSV header must name the columns " + String.join(", ", COLUMNS) + " (the id is optional)");
+            }
+        }
+
+        List<String> errors = new LinkedList<>();
+        Set<Long> importedIds = new HashSet<>();
+        List<Product> batch = new ArrayList<>(BATCH_SIZE);
+        long inserted = 0;
+        long updated = 0;
+        String line;
+        while((line = lines.readLine()) != null) {
+            lineNumber++;
+            if(StringUtils.isBlank(line)) continue;
+            Product product;
+            try {
+                product = format == Format.CSV ? fromCsv(columns, line) : fromJson(line);
+                validate(product, catalog, importedIds);
+            } catch(IllegalArgumentException exception) {
+                if(errors.size() < MAX_REPORTED_ERRORS) errors.add("Line " + lineNumber + ": " + exception.getLocalizedMessage());
+                continue;
+            }
+            if(product.getId() != null) {
+                importedIds.add(product.getId());
+                updated++;
+            } else {
+                inserted++;
+            }
+            // Once a row is rejected nothing will be written, the rest are just validated
+            if(!errors.isEmpty()) continue;
+            batch.add(product);
+            if(batch.size() == BATCH_SIZE) {
+                writeBatch(batch, catalog, now);
+                batch.clear();
+            }
+        }
+        if(!errors.isEmpty()) {
+            // Undo the batches written before the first rejected row
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return rejected(startMillis, errors.toArray(new String[0]));
+        }
+        if(!batch.isEmpty()) writeBatch(batch, catalog, now);
+
+        // The denormalized order listings are updated within the import transaction,
+        // while the in-memory views are swapped as a whole once it commits
+        if(!importedIds.isEmpty()) orderViewRepository.refreshProductDetailsOf(importedIds);
+        productService.refreshCatalog();
+        productPriceService.refreshPriceHistory();
+        saleService.refreshActiveDiscounts();
+        return ProductImportResult.builder()
+                .insertedProducts(inserted)
+                .updatedProducts(updated)
+                .errors(List.of())
+                .elapsedMillis(System.currentTimeMillis() - startMillis)
+            .build();
+    }
+
+    private void writeBatch(List<Product> batch, ProductCatalog catalog, Timestamp now) {
+        long newProducts = batch.stream().filter(product -> product.getId() == null).count();
+        if(newProducts > 0) {
+            long nextId = allocateIds(newProducts);
+            for(Product product : batch) {
+                if(product.getId() == null) product.setId(nextId++);
+            }
+        }
+        jdbcTemplate.batchUpdate(UPSERT_QUERY, batch, batch.size(), (statement, product) -> {
+            statement.setLong(1, product.getId());
+            statement.setString(2, product.getCategory());
+            statement.setInt(3, product.getPrice());
+            statement.setString(4, product.getRam());
+            statement.setString(5, product.getCores());
+            statement.setString(6, product.getStorage());
+            statement.setString(7, product.getTransfer());
+            statement.setLong(8, product.getRamBytes());
+            statement.setInt(9, product.getCoreCount());
+            statement.setLong(10, product.getStorageBytes());
+            statement.setLong(11, product.getTransferBytes());
+        });
+        // Only new products and price changes are appended to the price history
+        List<Product> repriced = new ArrayList<>();
+        for(Product product : batch) {
+            Optional<Product> stored = catalog.getProduct(product.getId());
+            if(stored.isEmpty() || !product.getPrice().equals(stored.get().getPrice())) repriced.add(product);
+        }
+        jdbcTemplate.batchUpdate(PRICE_QUERY, repriced, repriced.size(), (statement, product) -> {
+            statement.setLong(1, product.getId());
+            statement.setTimestamp(2, now);
+            statement.setInt(3, product.getPrice());
+        });
+    }
+
+    private long allocateIds(long amount) {
+        Long last = allocationTransaction.execute(status -> {
+            jdbcTemplate.update(ALLOCATE_IDS_QUERY, amount);
+            return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        });
+        return Objects.requireNonNull(last) - amount;
+    }
+
+    private static void validate(Product product, ProductCatalog catalog, Set<Long> importedIds) {
+        if(product.getId() != null) {
+            // New products always take generated ids, so they never collide with future ones
+            if(catalog.getProduct(product.getId()).isEmpty()) throw new IllegalArgumentException("There is no product with id " + product.getId());
+            if(importedIds.contains(product.getId())) throw new IllegalArgumentException("The product " + product.getId() + " is imported twice");
+        }
+        if(StringUtils.isBlank(product.getCategory())) throw new IllegalArgumentException("The category is missing");
+        if(product.getPrice() == null || product.getPrice() <= 0) throw new IllegalArgumentException("The price must be a positive amount");
+        if(!product.hasNumericSpecs()) throw new IllegalArgumentException("The ram, cores, storage and transfer are required");
+    }
+
+    private Product fromJson(String line) {
+        JsonNode row;
+        try {
+            row = objectMapper.readTree(line);
+        } catch(JsonProcessingException exception) {
+            throw new IllegalArgumentException("The row is not valid JSON");
+        }
+        if(!row.isObject()) throw new IllegalArgumentException("The row must be a JSON object");
+        Map<String, String> values = new HashMap<>();
+        for(String column : COLUMNS) {
+            JsonNode value = row.get(column);
+            if(value != null && !value.isNull()) values.put(column, value.asText());
+        }
+        return asProduct(values);
+    }
+
+    private static Product fromCsv(List<String> columns, String line) {
+        List<String> fields = splitCsv(line);
+        if(fields.size() != columns.size()) {
+            throw new IllegalArgumentException(String.format("Expected %d fields but found %d", columns.size(), fields.size()));
+        }
+        Map<String, String> values = new HashMap<>();
+        for(int index = 0; index < columns.size(); index++) {
+            if(StringUtils.isNotEmpty(fields.get(index))) values.put(columns.get(index), fields.get(index));
+        }
+        return asProduct(values);
+    }
+
+    private static Product asProduct(Map<String, String> values) {
+        Product product = new Product();
+        product.setId(parseNumber(values.get("id"), "id", Long::valueOf));
+        product.setCategory(StringUtils.trimToNull(values.get("category")));
+        product.setPrice(parseNumber(values.get("price"), "price", Integer::valueOf));
+        // The setters parse the specs into their numeric values (and normalize the strings)
+        product.setRam(values.get("ram"));
+        product.setCores(values.get("cores"));
+        product.setStorage(values.get("storage"));
+        product.setTransfer(values.get("transfer"));
+        return product;
+    }
+
+    private static <T> T parseNumber(String value, String column, Function<String, T> parser) {
+        if(StringUtils.isBlank(value)) return null;
+        try {
+            return parser.apply(value.trim());
+        } catch(NumberFormatException exception) {
+            throw new IllegalArgumentException("The " + column + " must be a whole number");
+        }
+    }
+
+    private static List<String> splitCsv(String line) {
+        // Fields may be quoted (with doubled quotes inside) to hold commas
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int index = 0; index < line.length(); index++) {
+            char character = line.charAt(index);
+            if(quoted) {
+                if(character == '"' && index + 1 < line.length() && line.charAt(index + 1) == '"') {
+                    field.append('"');
+                    index++;
+                } else if(character == '"') {
+                    quoted = false;
+                } else {
+                    field.append(character);
+                }
+            } else if(character == '"') {
+                quoted = true;
+            } else if(character == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(character);
+            }
+        }
+        if(quoted) throw new IllegalArgumentException("A quoted field is not closed");
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static ProductImportResult rejected(long startMillis, String... errors) {
+        return ProductImportResult.builder()
+                .insertedProducts(0)
+                .updatedProducts(0)
+                .errors(List.of(errors))
+                .elapsedMillis(System.currentTimeMillis() - startMillis)
+            .build();
+    }
+
+}
@@ -0,0 +1,111 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Product;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * An immutable multi-attribute index over the products of a catalog. Products are
+ * addressed by their position in the catalog; the index keeps a bucket of positions
+ * per category and the positions sorted by price, ram and cores. A query turns each
+ * criteria into a candidate set (a bucket, or a binary searched range of a sorted
+ * array) and intersects them.
+ */
+public final class ProductIndex {
+
+    private final List<Product> products;
+    private final Map<String, BitSet> categoryBuckets = new HashMap<>();
+    private final SortedAttribute byPrice;
+    private final SortedAttribute byRam;
+    private final SortedAttribute byCores;
+    private final SortedAttribute byId;
+
+    public ProductIndex(List<Product> products) {
+        this.products = products;
+        for(int position = 0; position < products.size(); position++) {
+            categoryBuckets.computeIfAbsent(products.get(position).getCategory(), category -> new BitSet()).set(position);
+        }
+        this.byId = new SortedAttribute(products, Product::getId);
+        this.byPrice = new SortedAttribute(products, product -> product.getPrice() != null ? product.getPrice() : Long.MAX_VALUE);
+        // Products without specs never match a lower bound
+        this.byRam = new SortedAttribute(products, product -> product.getRamBytes() != null ? product.getRamBytes() : Long.MIN_VALUE);
+        this.byCores = new SortedAttribute(products, product -> product.getCoreCount() != null ? product.getCoreCount() : Long.MIN_VALUE);
+    }
+
+    public List<Product> search(ProductQuery query) {
+        BitSet candidates = new BitSet(products.size());
+        candidates.set(0, products.size());
+        if(query.getCategory() != null) {
+            candidates.and(categoryBuckets.getOrDefault(query.getCategory(), new BitSet()));
+        }
+        if(query.getMaxPrice() != null) candidates.and(byPrice.atMost(query.getMaxPrice()));
+        if(query.getMinRamBytes() != null) candidates.and(byRam.atLeast(query.getMinRamBytes()));
+        if(query.getMinCores() != null) candidates.and(byCores.atLeast(query.getMinCores()));
+
+        SortedAttribute order;
+        switch(query.getSort()) {
+            case PRICE: order = byPrice; break;
+            case RAM: order = byRam; break;
+            case CORES: order = byCores; break;
+            default: order = byId;
+        }
+        List<Product> results = new ArrayList<>(candidates.cardinality());
+        for(int rank = 0; rank < order.positions.length; rank++) {
+            int position = order.positions[query.isDescending() ? order.positions.length - 1 - rank : rank];
+            if(candidates.get(position)) results.add(products.get(position));
+        }
+        return results;
+    }
+
+    /**
+     * The positions of the products sorted by one attribute, along with the sorted values.
+     */
+    private static final class SortedAttribute {
+
+        private final int[] positions;
+        private final long[] values;
+
+        private SortedAttribute(List<Product> products, ToLongFunction<Product> attribute) {
+            long[] unsorted = new long[products.size()];
+            Integer[] order = new Integer[products.size()];
+            for(int position = 0; position < products.size(); position++) {
+                unsorted[position] = attribute.applyAsLong(products.get(position));
+                order[position] = position;
+            }
+            Arrays.sort(order, Comparator.comparingLong(position -> unsorted[position]));
+            this.positions = new int[order.length];
+            this.values = new long[order.length];
+            for(int rank = 0; rank < order.length; rank++) {
+                positions[rank] = order[rank];
+                values[rank] = unsorted[order[rank]];
+            }
+        }
+
+        private BitSet atLeast(long bound) {
+            return range(firstRankNotBelow(bound), positions.length);
+        }
+
+        private BitSet atMost(long bound) {
+            return range(0, firstRankNotBelow(bound == Long.MAX_VALUE ? bound : bound + 1));
+        }
+
+        private BitSet range(int fromRank, int toRank) {
+            BitSet set = new BitSet(positions.length);
+            for(int rank = fromRank; rank < toRank; rank++) set.set(positions[rank]);
+            return set;
+        }
+
+        private int firstRankNotBelow(long bound) {
+            int low = 0;
+            int high = values.length;
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                if(values[middle] < bound) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+    }
+
+}
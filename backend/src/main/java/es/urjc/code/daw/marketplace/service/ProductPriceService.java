@@ -0,0 +1,38 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.pricing.PriceHistory;
+import java.util.Date;
+
+public interface ProductPriceService {
+
+    /**
+     * Returns the current snapshot of the price history.
+     */
+    PriceHistory getPriceHistory();
+
+    /**
+     * Returns the price of the product at the given moment, or its current
+     * price if it had no recorded price by then.
+     */
+    int priceAt(Product product, Date moment);
+
+    /**
+     * Returns the price of the ordered product when the order was placed (now
+     * if it has not been placed yet).
+     */
+    int priceOf(Order order);
+
+    /**
+     * Appends the current price of the product to its history if it changed, and
+     * rebuilds the history snapshot once the current transaction (if any) commits.
+     */
+    void recordPrice(Product product);
+
+    /**
+     * Rebuilds the history snapshot once the current transaction (if any) commits.
+     */
+    void refreshPriceHistory();
+
+}
@@ -0,0 +1,79 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.domain.ProductPrice;
+import es.urjc.code.daw.marketplace.pricing.PriceHistory;
+import es.urjc.code.daw.marketplace.repository.ProductPriceRepository;
+import es.urjc.code.daw.marketplace.util.TimeUtils;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import javax.transaction.Transactional;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Optional;
+
+@Service
+@Transactional
+public class ProductPriceServiceImpl implements ProductPriceService {
+
+    // The products stored before their prices were tracked are priced the same since ever
+    private static final Date SINCE_EVER = new Date(0);
+
+    private final ProductPriceRepository productPriceRepository;
+
+    // Prices are read by every order but barely change, so they are served from a snapshot
+    private volatile PriceHistory priceHistory = PriceHistory.EMPTY;
+
+    public ProductPriceServiceImpl(ProductPriceRepository productPriceRepository) {
+        this.productPriceRepository = productPriceRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPriceHistory() {
+        productPriceRepository.seedMissing(SINCE_EVER);
+        TransactionUtils.afterCommit(this::reloadPriceHistory);
+    }
+
+    @Override
+    public PriceHistory getPriceHistory() {
+        return priceHistory;
+    }
+
+    @Override
+    public int priceAt(Product product, Date moment) {
+        return priceHistory.priceAt(product.getId(), moment).orElse(product.getPrice());
+    }
+
+    @Override
+    public int priceOf(Order order) {
+        Date moment = order.getCreationDate() != null ? order.getCreationDate() : TimeUtils.now();
+        return priceAt(order.getProduct(), moment);
+    }
+
+    @Override
+    public void recordPrice(Product product) {
+        if(product.getPrice() == null) return;
+        Optional<Integer> latestPrice = priceHistory.latestPrice(product.getId());
+        if(latestPrice.isPresent() && Objects.equals(latestPrice.get(), product.getPrice())) return;
+        productPriceRepository.save(ProductPrice.builder()
+                .productId(product.getId())
+                .validFrom(TimeUtils.now())
+                .price(product.getPrice())
+            .build());
+        refreshPriceHistory();
+    }
+
+    @Override
+    public void refreshPriceHistory() {
+        TransactionUtils.afterCommit(this::reloadPriceHistory);
+    }
+
+    private synchronized void reloadPriceHistory() {
+        // Reloads are serialized so an older read can never overwrite a newer one
+        priceHistory = new PriceHistory(priceHistory.getVersion() + 1, productPriceRepository.findAllOrdered());
+    }
+
+}
@@ -0,0 +1,27 @@
+package es.urjc.code.daw.marketplace.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A multi-criteria product search, every criteria is optional.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class ProductQuery {
+
+    public enum Sort { ID, PRICE, RAM, CORES }
+
+    private final String category;
+    private final Long minRamBytes;
+    private final Integer maxPrice;
+    private final Integer minCores;
+    @Builder.Default
+    private final Sort sort = Sort.ID;
+    private final boolean descending;
+
+}
@@ -8,6 +8,18 @@ public interface ProductService {
 
     List<Product> findAllProducts();
 
+    /**
+     * Returns the current snapshot of the product catalog.
+     */
+    ProductCatalog getCatalog();
+
+    List<Product> searchProducts(ProductQuery query);
+
+    /**
+     * Rebuilds the catalog snapshot once the current transaction (if any) commits.
+     */
+    void refreshCatalog();
+
     List<Pair<String, Integer>> findCategoryToWeeklyPurchases();
 
     List<Integer> findSalesPerDayInWeek();
@@ -16,4 +28,6 @@ public interface ProductService {
 
     Product findProductById(Long id);
 
+    Product saveProduct(Product product);
+
 }
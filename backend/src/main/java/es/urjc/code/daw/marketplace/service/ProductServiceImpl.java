@@ -1,12 +1,15 @@
 package es.urjc.code.daw.marketplace.service;
 
-import com.google.common.collect.Lists;
 import es.urjc.code.daw.marketplace.domain.Product;
 import es.urjc.code.daw.marketplace.repository.OrderRepository;
+import es.urjc.code.daw.marketplace.repository.OrderViewRepository;
 import es.urjc.code.daw.marketplace.repository.ProductRepository;
 import es.urjc.code.daw.marketplace.util.TimeUtils;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import javax.transaction.Transactional;
 import java.util.*;
@@ -17,16 +20,53 @@ public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final SaleService saleService;
+    private final ProductPriceService productPriceService;
+
+    // The catalog barely changes, so it is served from an immutable snapshot swapped on each change
+    private volatile ProductCatalog catalog = ProductCatalog.EMPTY;
 
     public ProductServiceImpl(ProductRepository productRepository,
-                              OrderRepository orderRepository) {
+                              OrderRepository orderRepository,
+                              OrderViewRepository orderViewRepository,
+                              SaleService saleService,
+                              ProductPriceService productPriceService) {
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
+        this.orderViewRepository = orderViewRepository;
+        this.saleService = saleService;
+        this.productPriceService = productPriceService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCatalog() {
+        reloadCatalog();
     }
 
     @Override
     public List<Product> findAllProducts() {
-        return Lists.newArrayList(productRepository.findAll());
+        return catalog.getProducts();
+    }
+
+    @Override
+    public ProductCatalog getCatalog() {
+        return catalog;
+    }
+
+    @Override
+    public List<Product> searchProducts(ProductQuery query) {
+        return catalog.search(query);
+    }
+
+    @Override
+    public void refreshCatalog() {
+        TransactionUtils.afterCommit(this::reloadCatalog);
+    }
+
+    private synchronized void reloadCatalog() {
+        // Reloads are serialized so an older read can never overwrite a newer one
+        catalog = new ProductCatalog(catalog.getVersion() + 1, productRepository.findAll());
     }
 
     @Override
@@ -72,4 +112,24 @@ public class ProductServiceImpl implements ProductService {
         return product.orElseThrow();
     }
 
+    @Override
+    public Product saveProduct(Product product) {
+        Product savedProduct = productRepository.saveAndFlush(product);
+        // Keep the denormalized order listings in sync with the product details
+        orderViewRepository.refreshProductDetails(
+                savedProduct.getId(),
+                savedProduct.getCategory(),
+                savedProduct.getRam(),
+                savedProduct.getCores(),
+                savedProduct.getStorage(),
+                savedProduct.getTransfer()
+        );
+        // Price changes only apply from now on, past orders keep their price
+        productPriceService.recordPrice(savedProduct);
+        // The active discounts snapshot holds a copy of its target products
+        saleService.refreshActiveDiscounts();
+        refreshCatalog();
+        return savedProduct;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package es.urjc.code.daw.marketplace.service;
+
+public interface PurchaseCounterService {
+
+    /**
+     * Returns how many times the given user has purchased the given product.
+     */
+    int countPurchases(Long userId, Long productId);
+
+    /**
+     * Increments the purchases counter of the given user and product, must be
+     * called within the transaction that places the order.
+     *
+     * @return true if it is the first purchase of the product by the user
+     */
+    boolean recordPurchase(Long userId, Long productId);
+
+}
@@ -0,0 +1,54 @@
+package es.urjc.code.daw.marketplace.service;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import es.urjc.code.daw.marketplace.domain.UserProductPurchases;
+import es.urjc.code.daw.marketplace.repository.UserProductPurchasesRepository;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
+import org.springframework.stereotype.Service;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of the {@link PurchaseCounterService} backed by the
+ * user_product_purchases counters, with a bounded in-memory cache in front of
+ * them so eligibility checks are point lookups. The cached counters are dropped after
+ * each purchase, and expire anyway because an invalidation does not cancel a load in
+ * flight (which may have read the count from before the purchase).
+ */
+@Service
+public class PurchaseCounterServiceImpl implements PurchaseCounterService {
+
+    private static final int CACHE_SIZE = 100_000;
+    private static final long CACHE_EXPIRY_SECONDS = 60;
+
+    private final UserProductPurchasesRepository userProductPurchasesRepository;
+    private final LoadingCache<UserProductPurchases.Key, Integer> counters;
+
+    public PurchaseCounterServiceImpl(UserProductPurchasesRepository userProductPurchasesRepository) {
+        this.userProductPurchasesRepository = userProductPurchasesRepository;
+        this.counters = CacheBuilder.newBuilder()
+                .maximumSize(CACHE_SIZE)
+                .expireAfterWrite(CACHE_EXPIRY_SECONDS, TimeUnit.SECONDS)
+                .build(CacheLoader.from(key -> {
+                    Integer count = userProductPurchasesRepository.findCount(key.getUserId(), key.getProductId());
+                    return count != null ? count : 0;
+                }));
+    }
+
+    @Override
+    public int countPurchases(Long userId, Long productId) {
+        return counters.getUnchecked(new UserProductPurchases.Key(userId, productId));
+    }
+
+    @Override
+    public boolean recordPurchase(Long userId, Long productId) {
+        // The upsert reports one affected row when it inserts and two when it updates
+        boolean isFirstPurchase = userProductPurchasesRepository.increment(userId, productId) == 1;
+        // The cached counter is dropped once the new count is visible to everyone
+        UserProductPurchases.Key key = new UserProductPurchases.Key(userId, productId);
+        TransactionUtils.afterCommit(() -> counters.invalidate(key));
+        return isFirstPurchase;
+    }
+
+}
@@ -0,0 +1,20 @@
+package es.urjc.code.daw.marketplace.service;
+
+import java.util.List;
+
+public interface RelatedProductService {
+
+    /**
+     * Returns the ids of (at most) the given amount of products most often bought by
+     * the customers who bought the given product, most bought first.
+     */
+    List<Long> findRelatedProductIds(Long productId, int limit);
+
+    /**
+     * Counts the given product as bought along with every other product the user
+     * bought, once the current transaction (if any) commits. Must only be called on
+     * the first purchase of the product by the user.
+     */
+    void recordFirstPurchase(Long userId, Long productId);
+
+}
@@ -0,0 +1,236 @@
+package es.urjc.code.daw.marketplace.service;
+
+import com.google.common.util.concurrent.Striped;
+import es.urjc.code.daw.marketplace.repository.UserProductPurchasesRepository;
+import es.urjc.code.daw.marketplace.util.LongIntHashMap;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An implementation of the {@link RelatedProductService} backed by a sparse product
+ * by product co-purchase matrix: each product keeps a row with how many customers bought
+ * it along with every other product. The matrix is built once from the purchase counters
+ * and then updated in place on each first purchase of a product by a customer.
+ *
+ * Each pair of products is counted exactly once. A first purchase is applied after it
+ * commits, one at a time on a dedicated thread, pairing it with the user's committed
+ * products except the ones whose first purchase is still pending (those pair themselves
+ * with it once applied). The purchases committed while the matrix is loaded are held
+ * until it is loaded, and the pending ones the loaded snapshot already holds are not
+ * paired again.
+ */
+@Service
+public class RelatedProductServiceImpl implements RelatedProductService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RelatedProductServiceImpl.class);
+
+    private final UserProductPurchasesRepository userProductPurchasesRepository;
+    private final TransactionTemplate snapshotTemplate;
+    private final TransactionTemplate readTemplate;
+
+    private final Map<Long, LongIntHashMap> coPurchases = new ConcurrentHashMap<>();
+    // The products of each user whose first purchase was recorded but is not applied yet
+    private final Map<Long, Set<Long>> pendingPurchases = new ConcurrentHashMap<>();
+    private final Striped<Lock> userLocks = Striped.lock(64);
+    // The pending products of each user which were already counted by the load
+    private final Map<Long, Set<Long>> loadedPurchases = new ConcurrentHashMap<>();
+    // The (user, product) first purchases committed while loading, null once loaded
+    private List<long[]> heldPurchases = new ArrayList<>();
+    // Applies the committed purchases one after the other, off the committing threads
+    private final ExecutorService applier;
+
+    public RelatedProductServiceImpl(UserProductPurchasesRepository userProductPurchasesRepository,
+                                     PlatformTransactionManager transactionManager) {
+        this.userProductPurchasesRepository = userProductPurchasesRepository;
+        // Every query of the load reads from the same snapshot
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.applier = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "related-products-applier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        applier.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCoPurchases() {
+        snapshotTemplate.executeWithoutResult(status -> {
+            for(Object[] coPurchase : userProductPurchasesRepository.findCoPurchases()) {
+                long productId = ((Number) coPurchase[0]).longValue();
+                long otherProductId = ((Number) coPurchase[1]).longValue();
+                int customers = ((Number) coPurchase[2]).intValue();
+                LongIntHashMap row = rowOf(productId);
+                synchronized(row) {
+                    row.addTo(otherProductId, customers);
+                }
+            }
+            // The purchases pending by now which were committed before the snapshot were counted above
+            for(Map.Entry<Long, Set<Long>> pending : pendingPurchasesCopy().entrySet()) {
+                for(Long productId : pending.getValue()) {
+                    if(userProductPurchasesRepository.findCount(pending.getKey(), productId) == null) continue;
+                    loadedPurchases.computeIfAbsent(pending.getKey(), key -> ConcurrentHashMap.newKeySet()).add(productId);
+                }
+            }
+        });
+        List<long[]> held;
+        synchronized(this) {
+            held = heldPurchases;
+            heldPurchases = null;
+        }
+        held.forEach(purchase -> applier.execute(() -> apply(purchase[0], purchase[1])));
+        final String loggerMsg = String.format("[RelatedProductService] Loaded the co-purchases of %d products", coPurchases.size());
+        LOGGER.info(loggerMsg);
+    }
+
+    @Override
+    public List<Long> findRelatedProductIds(Long productId, int limit) {
+        LongIntHashMap row = coPurchases.get(productId);
+        if(row == null || limit <= 0) return List.of();
+        // The top products are kept sorted by descending count (and ascending id on ties)
+        long[] topIds = new long[limit];
+        int[] topCounts = new int[limit];
+        int[] size = { 0 };
+        synchronized(row) {
+            row.forEach((otherProductId, customers) -> {
+                int position = size[0];
+                while(position > 0 && (topCounts[position - 1] < customers
+                        || (topCounts[position - 1] == customers && topIds[position - 1] > otherProductId))) {
+                    position--;
+                }
+                if(position >= limit) return;
+                int moved = Math.min(size[0], limit - 1) - position;
+                System.arraycopy(topIds, position, topIds, position + 1, moved);
+                System.arraycopy(topCounts, position, topCounts, position + 1, moved);
+                topIds[position] = otherProductId;
+                topCounts[position] = customers;
+                size[0] = Math.min(size[0] + 1, limit);
+            });
+        }
+        List<Long> related = new ArrayList<>(size[0]);
+        for(int index = 0; index < size[0]; index++) related.add(topIds[index]);
+        return related;
+    }
+
+    @Override
+    public void recordFirstPurchase(Long userId, Long productId) {
+        // Pending before it commits, so no other purchase can pair with it on its own
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            pendingPurchases.computeIfAbsent(userId, key -> new HashSet<>()).add(productId);
+        } finally {
+            lock.unlock();
+        }
+        TransactionUtils.afterCommit(() -> {
+            synchronized(this) {
+                if(heldPurchases != null) {
+                    heldPurchases.add(new long[] { userId, productId });
+                    return;
+                }
+            }
+            applier.execute(() -> apply(userId, productId));
+        });
+        // A rolled back purchase is never applied
+        TransactionUtils.afterRollback(() -> removePending(userId, productId));
+    }
+
+    private void apply(long userId, long productId) {
+        try {
+            if(isLoaded(userId, productId)) return;
+            // Only the applier thread removes committed purchases from the pending ones, so the
+            // products read here stay pending until they are applied after this one
+            List<Number> boughtProductIds = readTemplate.execute(status -> userProductPurchasesRepository.findProductIds(userId));
+            Lock lock = userLocks.get(userId);
+            lock.lock();
+            try {
+                Set<Long> pendingProductIds = pendingPurchases.getOrDefault(userId, Set.of());
+                LongIntHashMap row = rowOf(productId);
+                for(Number boughtProductId : boughtProductIds) {
+                    long otherProductId = boughtProductId.longValue();
+                    if(otherProductId == productId || pendingProductIds.contains(otherProductId)) continue;
+                    synchronized(row) {
+                        row.addTo(otherProductId, 1);
+                    }
+                    LongIntHashMap otherRow = rowOf(otherProductId);
+                    synchronized(otherRow) {
+                        otherRow.addTo(productId, 1);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch(RuntimeException exception) {
+            final String loggerMsg = String.format("[RelatedProductService] Could not apply the purchase of product %d by user %d: %s", productId, userId, exception.getLocalizedMessage());
+            LOGGER.error(loggerMsg);
+        } finally {
+            removePending(userId, productId);
+        }
+    }
+
+    private boolean isLoaded(long userId, long productId) {
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            Set<Long> loadedProductIds = loadedPurchases.get(userId);
+            if(loadedProductIds == null || !loadedProductIds.remove(productId)) return false;
+            if(loadedProductIds.isEmpty()) loadedPurchases.remove(userId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removePending(long userId, long productId) {
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            Set<Long> pendingProductIds = pendingPurchases.get(userId);
+            if(pendingProductIds == null) return;
+            pendingProductIds.remove(productId);
+            if(pendingProductIds.isEmpty()) pendingPurchases.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<Long, Set<Long>> pendingPurchasesCopy() {
+        Map<Long, Set<Long>> copy = new HashMap<>();
+        for(Long userId : pendingPurchases.keySet()) {
+            Lock lock = userLocks.get(userId);
+            lock.lock();
+            try {
+                Set<Long> pendingProductIds = pendingPurchases.get(userId);
+                if(pendingProductIds != null) copy.put(userId, new HashSet<>(pendingProductIds));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return copy;
+    }
+
+    private LongIntHashMap rowOf(long productId) {
+        return coPurchases.computeIfAbsent(productId, key -> new LongIntHashMap());
+    }
+
+}
@@ -8,16 +8,16 @@ import java.util.Optional;
 
 public interface SaleService {
 
-    boolean isEligibleForCurrentOtd(Long userId, Long productId);
-
-    void applyOtdDiscount(Order order);
+    /**
+     * Prices the given order applying every eligible active promotion of its product
+     * and redeems the applied one time discounts.
+     *
+     * @param order the order to be placed, its final cost is updated in place
+     */
+    void applyDiscounts(Order order);
 
     Optional<OneTimeDiscount> getCurrentOtd();
 
-    boolean isEligibleForCurrentAd(Long userId, Long productId);
-
-    void applyAdDiscount(Order order);
-
     Optional<AccumulativeDiscount> getCurrentAd();
 
     OneTimeDiscount updateCurrentOtd(OneTimeDiscount discount);
@@ -28,4 +28,41 @@ public interface SaleService {
 
     void disableCurrentAd();
 
+    /**
+     * Saves the given one time discount alongside the existing ones, none of them
+     * is disabled (overlapping promotions stack).
+     */
+    OneTimeDiscount createOtd(OneTimeDiscount discount);
+
+    /**
+     * Saves the given accumulative discount alongside the existing ones, none of them
+     * is disabled (overlapping promotions stack).
+     */
+    AccumulativeDiscount createAd(AccumulativeDiscount discount);
+
+    /**
+     * Disables the given one time discount only.
+     *
+     * @return whether there was such an enabled discount
+     */
+    boolean disableOtd(Long otdId);
+
+    /**
+     * Disables the given accumulative discount only.
+     *
+     * @return whether there was such an enabled discount
+     */
+    boolean disableAd(Long adId);
+
+    /**
+     * Returns the current snapshot of the active discounts and their target products.
+     */
+    ActiveDiscounts getActiveDiscounts();
+
+    /**
+     * Rebuilds the snapshot of the active discounts once the current transaction
+     * (if any) commits, i.e. after a discounted product has been modified.
+     */
+    void refreshActiveDiscounts();
+
 }
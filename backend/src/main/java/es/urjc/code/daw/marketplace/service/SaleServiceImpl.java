@@ -3,104 +3,232 @@ package es.urjc.code.daw.marketplace.service;
 import es.urjc.code.daw.marketplace.domain.AccumulativeDiscount;
 import es.urjc.code.daw.marketplace.domain.OneTimeDiscount;
 import es.urjc.code.daw.marketplace.domain.Order;
-import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.pricing.PriceQuote;
+import es.urjc.code.daw.marketplace.pricing.PricingEngine;
+import es.urjc.code.daw.marketplace.pricing.PricingRule;
 import es.urjc.code.daw.marketplace.repository.*;
+import es.urjc.code.daw.marketplace.util.TimeUtils;
+import es.urjc.code.daw.marketplace.util.TransactionUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
 import javax.transaction.Transactional;
-import java.util.Date;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class SaleServiceImpl implements SaleService {
 
-    private final UserRepository userRepository;
-    private final OrderRepository orderRepository;
     private final OtdRepository otdRepository;
     private final AdRepository adRepository;
+    private final ProductRepository productRepository;
+    private final DiscountConsumerService discountConsumerService;
+    private final PurchaseCounterService purchaseCounterService;
+    private final ProductPriceService productPriceService;
+    // Boundaries get their own thread, so they are never delayed by the other scheduled jobs
+    private final ThreadPoolTaskScheduler boundaryScheduler;
 
-    public SaleServiceImpl(UserRepository userRepository,
-                           OrderRepository orderRepository,
-                           OtdRepository otdRepository,
-                           AdRepository adRepository) {
-        this.userRepository = userRepository;
-        this.orderRepository = orderRepository;
+    // Swapped as a whole after each committed change and at each timeline boundary,
+    // so readers never touch the database nor compare dates
+    private volatile ActiveDiscounts activeDiscounts = ActiveDiscounts.EMPTY;
+    private ScheduledFuture<?> nextBoundary;
+
+    public SaleServiceImpl(OtdRepository otdRepository,
+                           AdRepository adRepository,
+                           ProductRepository productRepository,
+                           DiscountConsumerService discountConsumerService,
+                           PurchaseCounterService purchaseCounterService,
+                           ProductPriceService productPriceService) {
         this.otdRepository = otdRepository;
         this.adRepository = adRepository;
+        this.productRepository = productRepository;
+        this.discountConsumerService = discountConsumerService;
+        this.purchaseCounterService = purchaseCounterService;
+        this.productPriceService = productPriceService;
+        this.boundaryScheduler = new ThreadPoolTaskScheduler();
+        this.boundaryScheduler.setPoolSize(1);
+        this.boundaryScheduler.setThreadNamePrefix("discount-boundaries-");
+        this.boundaryScheduler.initialize();
     }
 
-    @Override
-    public boolean isEligibleForCurrentOtd(Long userId, Long productId) {
-        Optional<OneTimeDiscount> optionalCurrentOtd = otdRepository.findCurrentlyActiveOtd();
-        if(optionalCurrentOtd.isEmpty()) return false;
-        OneTimeDiscount currentOtd = optionalCurrentOtd.get();
-        User user = userRepository.findUserById(userId);
-        boolean hasNotConsumedDiscount = !currentOtd.getConsumers().contains(user);
-        int userProductPurchases = orderRepository.countConcreteProductPurchasesGivenUser(currentOtd.getProductId(), userId);
-        return hasNotConsumedDiscount && userProductPurchases == 0;
+    @PreDestroy
+    public void shutdown() {
+        boundaryScheduler.shutdown();
     }
 
-    @Override
-    public boolean isEligibleForCurrentAd(Long userId, Long productId) {
-        Optional<AccumulativeDiscount> optionalCurrentAd = adRepository.findCurrentlyActiveAd();
-        if(optionalCurrentAd.isEmpty()) return false;
-        AccumulativeDiscount currentAd = optionalCurrentAd.get();
-        int userProductPurchases = orderRepository.countConcreteProductPurchasesGivenUser(currentAd.getProductId(), userId);
-        return userProductPurchases >= currentAd.getBulkAmount();
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveDiscounts() {
+        reloadActiveDiscounts();
     }
 
-    @Override
-    public void applyOtdDiscount(Order order) {
-        boolean isEligible = isEligibleForCurrentOtd(order.getUser().getId(), order.getProduct().getId());
-        if(!isEligible) return;
-        OneTimeDiscount discount = otdRepository.findCurrentlyActiveOtd().orElseThrow();
-        discount.addConsumer(order.getUser());
-        otdRepository.saveAndFlush(discount);
-        order.applyDiscount(discount.getDiscountPercentage());
+    @Scheduled(fixedDelayString = "${scheduling.discounts.resync_millis}")
+    public void resyncActiveDiscounts() {
+        reloadActiveDiscounts();
     }
 
     @Override
-    public void applyAdDiscount(Order order) {
-        boolean isEligible = isEligibleForCurrentAd(order.getUser().getId(), order.getProduct().getId());
-        if(!isEligible) return;
-        AccumulativeDiscount discount = adRepository.findCurrentlyActiveAd().orElseThrow();
-        discount.addConsumer(order.getUser());
-        adRepository.saveAndFlush(discount);
-        order.applyDiscount(discount.getDiscountPercentage());
+    public void applyDiscounts(Order order) {
+        PricingEngine pricingEngine = activeDiscounts.getPricingEngine();
+        Long productId = order.getProduct().getId();
+        // Products without promotions are priced without touching the database at all
+        if(!pricingEngine.hasRules(productId)) return;
+        Long userId = order.getUser().getId();
+        int productPurchases = purchaseCounterService.countPurchases(userId, productId);
+        int price = productPriceService.priceOf(order);
+        Set<Long> lostRedemptions = new HashSet<>();
+        Predicate<PricingRule> hasConsumed = rule -> rule.getKind() == PricingRule.Kind.ONE_TIME
+                && (lostRedemptions.contains(rule.getDiscountId()) || discountConsumerService.hasConsumedOtd(rule.getDiscountId(), userId));
+        PriceQuote quote = pricingEngine.price(productId, price, productPurchases, hasConsumed);
+        // The redemption is the insert itself, the unique (otd_id, user_id) key lets only one order win,
+        // an order that loses the race is priced again without that one time discount
+        Optional<PricingRule> oneTimeRule = findAppliedRule(quote, PricingRule.Kind.ONE_TIME);
+        while(oneTimeRule.isPresent()) {
+            Long otdId = oneTimeRule.get().getDiscountId();
+            boolean isRedeemed = otdRepository.addConsumer(otdId, userId) == 1;
+            discountConsumerService.addOtdConsumer(otdId, userId);
+            if(isRedeemed) break;
+            lostRedemptions.add(otdId);
+            quote = pricingEngine.price(productId, price, productPurchases, hasConsumed);
+            oneTimeRule = findAppliedRule(quote, PricingRule.Kind.ONE_TIME);
+        }
+        Optional<PricingRule> accumulativeRule = findAppliedRule(quote, PricingRule.Kind.ACCUMULATIVE);
+        accumulativeRule.ifPresent(rule -> {
+            adRepository.addConsumer(rule.getDiscountId(), userId);
+            discountConsumerService.addAdConsumer(rule.getDiscountId(), userId);
+        });
+        order.setFinalCost(quote.getFinalCost());
+    }
+
+    private static Optional<PricingRule> findAppliedRule(PriceQuote quote, PricingRule.Kind kind) {
+        return quote.getAppliedRules().stream().filter(rule -> rule.getKind() == kind).findFirst();
     }
 
     @Override
     public Optional<OneTimeDiscount> getCurrentOtd() {
-        return otdRepository.findCurrentlyActiveOtd();
+        return activeDiscounts.getOtd();
     }
 
     @Override
     public Optional<AccumulativeDiscount> getCurrentAd() {
-        return adRepository.findCurrentlyActiveAd();
+        return activeDiscounts.getAd();
     }
 
     @Override
     public OneTimeDiscount updateCurrentOtd(OneTimeDiscount discount) {
-        disableCurrentOtd();
-        if(discount.getEnabled()) return otdRepository.saveAndFlush(discount);
-        return null;
+        if(!discount.getEnabled()) {
+            disableCurrentOtd();
+            return null;
+        }
+        // Only the discounts whose window overlaps the new one are replaced, the queued ones stay
+        if(discount.getStart() == null) discount.setStart(TimeUtils.now());
+        otdRepository.disableOverlappingOtds(discount.getStart(), discount.getStop());
+        OneTimeDiscount savedDiscount = otdRepository.saveAndFlush(discount);
+        discountConsumerService.activateOtd(savedDiscount.getId());
+        refreshActiveDiscounts();
+        return savedDiscount;
     }
 
     @Override
     public void disableCurrentOtd() {
-        otdRepository.disableActiveOtd();
+        otdRepository.disableActiveOtds(TimeUtils.now());
+        refreshActiveDiscounts();
     }
 
     @Override
     public AccumulativeDiscount updateCurrentAd(AccumulativeDiscount discount) {
-        disableCurrentAd();
-        if(discount.getEnabled()) return adRepository.saveAndFlush(discount);
-        return null;
+        if(!discount.getEnabled()) {
+            disableCurrentAd();
+            return null;
+        }
+        // Only the discounts whose window overlaps the new one are replaced, the queued ones stay
+        if(discount.getStart() == null) discount.setStart(TimeUtils.now());
+        adRepository.disableOverlappingAds(discount.getStart(), discount.getStop());
+        AccumulativeDiscount savedDiscount = adRepository.saveAndFlush(discount);
+        discountConsumerService.activateAd(savedDiscount.getId());
+        refreshActiveDiscounts();
+        return savedDiscount;
     }
 
     @Override
     public void disableCurrentAd() {
-        adRepository.disableActiveAd();
+        adRepository.disableActiveAds(TimeUtils.now());
+        refreshActiveDiscounts();
+    }
+
+    @Override
+    public OneTimeDiscount createOtd(OneTimeDiscount discount) {
+        discount.setEnabled(true);
+        OneTimeDiscount savedDiscount = otdRepository.saveAndFlush(discount);
+        discountConsumerService.activateOtd(savedDiscount.getId());
+        refreshActiveDiscounts();
+        return savedDiscount;
+    }
+
+    @Override
+    public AccumulativeDiscount createAd(AccumulativeDiscount discount) {
+        discount.setEnabled(true);
+        AccumulativeDiscount savedDiscount = adRepository.saveAndFlush(discount);
+        discountConsumerService.activateAd(savedDiscount.getId());
+        refreshActiveDiscounts();
+        return savedDiscount;
+    }
+
+    @Override
+    public boolean disableOtd(Long otdId) {
+        if(otdRepository.disableOtd(otdId) == 0) return false;
+        refreshActiveDiscounts();
+        return true;
+    }
+
+    @Override
+    public boolean disableAd(Long adId) {
+        if(adRepository.disableAd(adId) == 0) return false;
+        refreshActiveDiscounts();
+        return true;
+    }
+
+    @Override
+    public ActiveDiscounts getActiveDiscounts() {
+        return activeDiscounts;
+    }
+
+    @Override
+    public void refreshActiveDiscounts() {
+        TransactionUtils.afterCommit(this::reloadActiveDiscounts);
+    }
+
+    private synchronized void reloadActiveDiscounts() {
+        // Reloads are serialized so an older read can never overwrite a newer one
+        Date now = TimeUtils.now();
+        otdRepository.disableExpiredOtds(now);
+        adRepository.disableExpiredAds(now);
+        List<OneTimeDiscount> otds = otdRepository.findAllCurrentlyActiveOtds(now);
+        List<AccumulativeDiscount> ads = adRepository.findAllCurrentlyActiveAds(now);
+        Product otdProduct = otds.isEmpty() ? null : productRepository.findById(otds.get(0).getProductId()).orElse(null);
+        Product adProduct = ads.isEmpty() ? null : productRepository.findById(ads.get(0).getProductId()).orElse(null);
+        activeDiscounts = new ActiveDiscounts(activeDiscounts.getVersion() + 1, otds, ads, otdProduct, adProduct);
+        // The consumers of the discounts that are no longer active are not needed anymore
+        discountConsumerService.retainActive(
+                otds.stream().map(OneTimeDiscount::getId).collect(Collectors.toSet()),
+                ads.stream().map(AccumulativeDiscount::getId).collect(Collectors.toSet())
+        );
+        scheduleNextBoundary(now);
+    }
+
+    private void scheduleNextBoundary(Date now) {
+        // The timeline holds every upcoming activation and expiration of the enabled discounts
+        NavigableSet<Date> timeline = new TreeSet<>();
+        timeline.addAll(otdRepository.findBoundariesAfter(now));
+        timeline.addAll(adRepository.findBoundariesAfter(now));
+        if(nextBoundary != null) nextBoundary.cancel(false);
+        nextBoundary = timeline.isEmpty() ? null : boundaryScheduler.schedule(this::reloadActiveDiscounts, timeline.first());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.pricing.PricingRule;
+import es.urjc.code.daw.marketplace.pricing.SimulationResult;
+import java.util.Date;
+
+public interface SaleSimulationService {
+
+    /**
+     * Replays the historical orders of the rule product placed within the given
+     * range as if the rule had been active, using the same eligibility rules as
+     * the order placement.
+     *
+     * @param rule the proposed promotion
+     * @param from the (inclusive) lower bound of the orders creation date
+     * @param to the (exclusive) upper bound of the orders creation date
+     * @return the projected revenue, redemptions and affected customers
+     */
+    SimulationResult simulate(PricingRule rule, Date from, Date to);
+
+}
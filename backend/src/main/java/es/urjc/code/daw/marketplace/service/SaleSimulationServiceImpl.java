@@ -0,0 +1,193 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.pricing.PriceHistory;
+import es.urjc.code.daw.marketplace.pricing.PricingRule;
+import es.urjc.code.daw.marketplace.pricing.SimulationResult;
+import es.urjc.code.daw.marketplace.repository.ProductRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An implementation of the {@link SaleSimulationService}. The orders are read through
+ * a forward-only JDBC cursor in creation order, which is the only sequential part (each
+ * order needs the purchases its customer made before it). The rows are gathered into
+ * chunks which are priced in parallel by fork-join tasks while the cursor keeps reading.
+ * Only the placements are replayed: each order is priced from the list price of its
+ * product when it was placed, so neither the discounts applied back then nor the
+ * renewals charged since then are part of the compared revenue.
+ */
+@Service
+public class SaleSimulationServiceImpl implements SaleSimulationService {
+
+    private static final String PREVIOUS_PURCHASES_QUERY = "SELECT o.user_order, COUNT(*) FROM (" +
+            "SELECT user_order, product_order, creation_date FROM ordered_services_archive " +
+            "UNION ALL SELECT user_order, product_order, creation_date FROM ordered_services" +
+            ") o WHERE o.product_order = ? AND o.creation_date < ? GROUP BY o.user_order";
+
+    // The orders are archived by expiry date, so both tables are merged into a single creation order
+    private static final String REPLAY_QUERY = "SELECT o.user_order, o.creation_date FROM (" +
+            "SELECT id, user_order, creation_date FROM ordered_services_archive " +
+            "WHERE product_order = ? AND creation_date >= ? AND creation_date < ? " +
+            "UNION ALL SELECT id, user_order, creation_date FROM ordered_services " +
+            "WHERE product_order = ? AND creation_date >= ? AND creation_date < ?" +
+            ") o ORDER BY o.creation_date, o.id";
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int TASK_THRESHOLD = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final ProductPriceService productPriceService;
+
+    public SaleSimulationServiceImpl(DataSource dataSource,
+                                     ProductRepository productRepository,
+                                     ProductPriceService productPriceService) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.productRepository = productRepository;
+        this.productPriceService = productPriceService;
+    }
+
+    @Override
+    public SimulationResult simulate(PricingRule rule, Date from, Date to) {
+        long startMillis = System.currentTimeMillis();
+        final Timestamp lowerBound = new Timestamp(from.getTime());
+        final Timestamp upperBound = new Timestamp(to.getTime());
+        // The list prices come from a single snapshot of the history (the current price if none was recorded by then)
+        PriceHistory priceHistory = productPriceService.getPriceHistory();
+        int currentPrice = productRepository.findById(rule.getProductId()).map(Product::getPrice).orElse(0);
+
+        // The purchases each customer made before the simulated range
+        Map<Long, Integer> purchases = new HashMap<>();
+        jdbcTemplate.query(PREVIOUS_PURCHASES_QUERY,
+                (RowCallbackHandler) resultSet -> purchases.put(resultSet.getLong(1), resultSet.getInt(2)),
+                rule.getProductId(), lowerBound);
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<ForkJoinTask<Partial>> tasks = new LinkedList<>();
+        Chunk[] chunk = { new Chunk() };
+        RowCallbackHandler handler = resultSet -> {
+            long userId = resultSet.getLong(1);
+            int previousPurchases = purchases.merge(userId, 1, Integer::sum) - 1;
+            int listPrice = priceHistory.priceAt(rule.getProductId(), resultSet.getTimestamp(2)).orElse(currentPrice);
+            chunk[0].add(userId, previousPurchases, listPrice);
+            if(chunk[0].size == CHUNK_SIZE) {
+                tasks.add(pool.submit(new SimulationTask(rule, chunk[0], 0, CHUNK_SIZE)));
+                chunk[0] = new Chunk();
+            }
+        };
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REPLAY_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // The MySQL driver streams the rows one by one instead of buffering the whole result set
+            statement.setFetchSize(Integer.MIN_VALUE);
+            for(int offset = 0; offset < 6; offset += 3) {
+                statement.setLong(offset + 1, rule.getProductId());
+                statement.setTimestamp(offset + 2, lowerBound);
+                statement.setTimestamp(offset + 3, upperBound);
+            }
+            return statement;
+        }, handler);
+        if(chunk[0].size > 0) tasks.add(pool.submit(new SimulationTask(rule, chunk[0], 0, chunk[0].size)));
+
+        Partial result = new Partial();
+        for(ForkJoinTask<Partial> task : tasks) result.merge(task.join());
+        return SimulationResult.builder()
+                .replayedOrders(result.orders)
+                .redemptions(result.redemptions)
+                .affectedCustomers(result.customers.size())
+                .actualRevenue(result.actualRevenue)
+                .projectedRevenue(result.projectedRevenue)
+                .elapsedMillis(System.currentTimeMillis() - startMillis)
+            .build();
+    }
+
+    private static final class Chunk {
+
+        private final long[] userIds = new long[CHUNK_SIZE];
+        private final int[] previousPurchases = new int[CHUNK_SIZE];
+        private final int[] costs = new int[CHUNK_SIZE];
+        private int size;
+
+        private void add(long userId, int purchases, int cost) {
+            userIds[size] = userId;
+            previousPurchases[size] = purchases;
+            costs[size] = cost;
+            size++;
+        }
+
+    }
+
+    private static final class Partial {
+
+        private long orders;
+        private long redemptions;
+        private long actualRevenue;
+        private long projectedRevenue;
+        private final Set<Long> customers = new HashSet<>();
+
+        private Partial merge(Partial other) {
+            orders += other.orders;
+            redemptions += other.redemptions;
+            actualRevenue += other.actualRevenue;
+            projectedRevenue += other.projectedRevenue;
+            customers.addAll(other.customers);
+            return this;
+        }
+
+    }
+
+    private static final class SimulationTask extends RecursiveTask<Partial> {
+
+        private final PricingRule rule;
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        private SimulationTask(PricingRule rule, Chunk chunk, int from, int to) {
+            this.rule = rule;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if(to - from > TASK_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                SimulationTask left = new SimulationTask(rule, chunk, from, middle);
+                left.fork();
+                Partial right = new SimulationTask(rule, chunk, middle, to).compute();
+                return right.merge(left.join());
+            }
+            Partial partial = new Partial();
+            for(int index = from; index < to; index++) {
+                int cost = chunk.costs[index];
+                partial.orders++;
+                partial.actualRevenue += cost;
+                // A one time discount can only be consumed by the first purchase of the product,
+                // so there is no earlier redemption to keep track of
+                if(rule.isEligible(chunk.previousPurchases[index], false)) {
+                    int discountedCost = rule.apply(cost);
+                    partial.projectedRevenue += discountedCost;
+                    partial.redemptions++;
+                    partial.customers.add(chunk.userIds[index]);
+                } else {
+                    partial.projectedRevenue += cost;
+                }
+            }
+            return partial;
+        }
+
+    }
+
+}
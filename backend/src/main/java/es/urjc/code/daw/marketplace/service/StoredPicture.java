@@ -0,0 +1,34 @@
+package es.urjc.code.daw.marketplace.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import java.nio.file.Path;
+
+/**
+ * The location and metadata of a stored picture, enough to stream it and to
+ * answer conditional requests without reading it.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class StoredPicture {
+
+    private final Path path;
+    private final String contentType;
+    private final long size;
+    private final long lastModified;
+    // Content-addressed pictures never change, their name is their hash
+    private final boolean immutable;
+
+    /**
+     * Returns a (strong) entity tag which changes whenever the picture file is replaced.
+     */
+    public String getEtag() {
+        if(immutable) return "\"" + path.getFileName() + "\"";
+        return "\"" + path.getFileName() + "-" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+}
@@ -0,0 +1,31 @@
+package es.urjc.code.daw.marketplace.service;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface ThumbnailService {
+
+    /**
+     * The sizes (in pixels of the longest side) of the generated thumbnails.
+     */
+    int[] SIZES = { 32, 64, 256 };
+
+    /**
+     * Queues the generation of the thumbnails of the given picture, unless they
+     * were already generated (pictures are immutable).
+     *
+     * @param picture the path of the original picture
+     */
+    void generateThumbnails(Path picture);
+
+    /**
+     * Returns the smallest generated thumbnail of the picture which is at least as
+     * large as the given size.
+     *
+     * @param picture the path of the original picture
+     * @param size the requested size in pixels
+     * @return the thumbnail path or nothing if there is none large enough yet
+     */
+    Optional<Path> findThumbnail(Path picture, int size);
+
+}
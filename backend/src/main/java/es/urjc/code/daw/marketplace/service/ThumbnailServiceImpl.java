@@ -0,0 +1,168 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.config.PictureProperties;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An implementation of the {@link ThumbnailService} which decodes each picture once
+ * and scales it down to every size in a bounded pool of background threads. When the
+ * queue is full the request is dropped, the original picture is served meanwhile.
+ * Each thumbnail is written to a temporary file and then moved next to the original,
+ * so readers never see a half-written one. The dimensions are read from the header
+ * first, so pictures above the pixel limit are never decoded.
+ */
+@Service
+public class ThumbnailServiceImpl implements ThumbnailService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailServiceImpl.class);
+    private static final String[] FORMATS = { "jpg", "png" };
+
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+
+    public ThumbnailServiceImpl(PictureProperties pictureProperties) {
+        this.maxPixels = pictureProperties.getThumbnailMaxPixels();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                pictureProperties.getThumbnailThreads(),
+                pictureProperties.getThumbnailThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pictureProperties.getThumbnailQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnails-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    @Override
+    public void generateThumbnails(Path picture) {
+        // The smallest thumbnail is the last one written
+        if(hasThumbnail(picture, SIZES[0])) return;
+        try {
+            executor.execute(() -> generate(picture));
+        } catch(RejectedExecutionException exception) {
+            final String loggerMsg = String.format("[ThumbnailService] The queue is full, no thumbnails for %s", picture);
+            LOGGER.warn(loggerMsg);
+        }
+    }
+
+    @Override
+    public Optional<Path> findThumbnail(Path picture, int size) {
+        for(int thumbnailSize : SIZES) {
+            if(thumbnailSize < size) continue;
+            Optional<Path> thumbnail = thumbnailOf(picture, thumbnailSize);
+            if(thumbnail.isPresent()) return thumbnail;
+        }
+        return Optional.empty();
+    }
+
+    private static boolean hasThumbnail(Path picture, int size) {
+        return thumbnailOf(picture, size).isPresent();
+    }
+
+    private static Optional<Path> thumbnailOf(Path picture, int size) {
+        for(String format : FORMATS) {
+            Path thumbnail = thumbnailOf(picture, size, format);
+            if(Files.isRegularFile(thumbnail)) return Optional.of(thumbnail);
+        }
+        return Optional.empty();
+    }
+
+    private void generate(Path picture) {
+        try {
+            BufferedImage image = read(picture);
+            if(image == null) {
+                final String loggerMsg = String.format("[ThumbnailService] %s is not a supported image", picture);
+                LOGGER.warn(loggerMsg);
+                return;
+            }
+            // Pictures with transparency keep it as PNG, the rest are smaller as JPEG
+            boolean hasAlpha = image.getColorModel().hasAlpha();
+            String format = hasAlpha ? "png" : "jpg";
+            int type = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            // Each size is scaled down from the previous (larger) one, which is cheaper and smoother
+            BufferedImage source = image;
+            for(int index = SIZES.length - 1; index >= 0; index--) {
+                source = scale(source, SIZES[index], type);
+                Path thumbnail = thumbnailOf(picture, SIZES[index], format);
+                Path temporary = Files.createTempFile(picture.getParent(), ".thumbnail", "." + format);
+                try {
+                    ImageIO.write(source, format, temporary.toFile());
+                    Files.move(temporary, thumbnail, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+            }
+        } catch(IOException exception) {
+            final String loggerMsg = String.format("[ThumbnailService] Could not generate the thumbnails of %s: %s", picture, exception.getLocalizedMessage());
+            LOGGER.error(loggerMsg);
+        }
+    }
+
+    private BufferedImage read(Path picture) throws IOException {
+        try(ImageInputStream input = ImageIO.createImageInputStream(picture.toFile())) {
+            if(input == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if(!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if(pixels > maxPixels) throw new IOException(String.format("%d pixels exceed the limit of %d", pixels, maxPixels));
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size, int type) {
+        // Pictures are only scaled down, preserving their aspect ratio
+        double ratio = Math.min(1d, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static Path thumbnailOf(Path picture, int size, String format) {
+        String baseName = FilenameUtils.getBaseName(picture.getFileName().toString());
+        return picture.resolveSibling(baseName + "-" + size + "." + format);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+}
@@ -2,7 +2,10 @@ package es.urjc.code.daw.marketplace.service;
 
 import es.urjc.code.daw.marketplace.domain.Role;
 import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.repository.ArchivedOrderRepository;
+import es.urjc.code.daw.marketplace.repository.OrderViewRepository;
 import es.urjc.code.daw.marketplace.repository.RoleRepository;
+import es.urjc.code.daw.marketplace.repository.UserProductPurchasesRepository;
 import es.urjc.code.daw.marketplace.repository.UserRepository;
 import es.urjc.code.daw.marketplace.security.user.UserPrincipal;
 import org.apache.commons.lang3.StringUtils;
@@ -31,13 +34,22 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final OrderViewRepository orderViewRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final UserProductPurchasesRepository userProductPurchasesRepository;
 
     public UserServiceImpl(UserRepository userRepository,
                            RoleRepository authorityRepository,
-                           PasswordEncoder passwordEncoder) {
+                           PasswordEncoder passwordEncoder,
+                           OrderViewRepository orderViewRepository,
+                           ArchivedOrderRepository archivedOrderRepository,
+                           UserProductPurchasesRepository userProductPurchasesRepository) {
         this.userRepository = userRepository;
         this.roleRepository = authorityRepository;
         this.passwordEncoder = passwordEncoder;
+        this.orderViewRepository = orderViewRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.userProductPurchasesRepository = userProductPurchasesRepository;
     }
 
     @Override
@@ -140,6 +152,9 @@ public class UserServiceImpl implements UserService {
     public User deleteUserById(Long id) {
         User user = userRepository.findUserById(id);
         userRepository.deleteById(id);
+        orderViewRepository.deleteAllByUserId(id);
+        archivedOrderRepository.deleteAllByUserId(id);
+        userProductPurchasesRepository.deleteAllByUserId(id);
         return user;
     }
 
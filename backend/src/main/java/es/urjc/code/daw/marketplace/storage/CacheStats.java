@@ -0,0 +1,29 @@
+package es.urjc.code.daw.marketplace.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A point in time view of the counters of a cache.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long sizeBytes;
+    private final long capacityBytes;
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0d : (double) hits / requests;
+    }
+
+}
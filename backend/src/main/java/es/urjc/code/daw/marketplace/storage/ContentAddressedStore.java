@@ -0,0 +1,174 @@
+package es.urjc.code.daw.marketplace.storage;
+
+import com.google.common.io.BaseEncoding;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A store of immutable blobs named after the SHA-256 of their content (plus an optional
+ * extension), laid out in two levels of sharded directories (ab/cd/abcd...). Storing the
+ * same content twice keeps a single blob. Blobs are written to a temporary file while
+ * they are hashed and then atomically moved into place, so a blob is either complete or
+ * missing. Derived files (like thumbnails) may be kept next to a blob, named after its
+ * hash followed by a dash, and they are deleted along with it.
+ */
+public class ContentAddressedStore {
+
+    private static final String TEMPORARY_DIRECTORY = "tmp";
+    private static final Pattern BLOB_ID = Pattern.compile("([0-9a-f]{64})(\\.[0-9a-z]{1,8})?");
+    private static final Pattern STORED_FILE = Pattern.compile("([0-9a-f]{64})([.-].*)?");
+
+    private final Path root;
+    private final Path temporaryDirectory;
+
+    public ContentAddressedStore(Path root) throws IOException {
+        this.root = root;
+        this.temporaryDirectory = root.resolve(TEMPORARY_DIRECTORY);
+        Files.createDirectories(temporaryDirectory);
+    }
+
+    public static boolean isBlobId(String blobId) {
+        return blobId != null && BLOB_ID.matcher(blobId).matches();
+    }
+
+    /**
+     * Stores the content of the given stream, unless an identical blob is already stored.
+     *
+     * @param content the content to be stored, it is not closed
+     * @param extension the extension of the blob id (without the dot), may be empty
+     * @return the id of the blob, the hex SHA-256 of the content plus the extension
+     */
+    public String put(InputStream content, String extension) throws IOException {
+        String suffix = extension == null || extension.isEmpty() ? "" : "." + extension.toLowerCase(Locale.ROOT);
+        Path temporary = Files.createTempFile(temporaryDirectory, "blob", suffix);
+        try {
+            MessageDigest digest = newDigest();
+            try(OutputStream output = Files.newOutputStream(temporary);
+                DigestInputStream input = new DigestInputStream(content, digest)) {
+                input.transferTo(output);
+            }
+            String blobId = BaseEncoding.base16().lowerCase().encode(digest.digest()) + suffix;
+            if(!isBlobId(blobId)) throw new IllegalArgumentException("The extension is not valid: " + extension);
+            Path blob = resolve(blobId);
+            if(Files.exists(blob)) {
+                // Deduplicated, the blob is touched so a sweep in progress does not take it as stale
+                try {
+                    Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+                    return blobId;
+                } catch(NoSuchFileException exception) {
+                    // It was just swept, so it is stored again
+                }
+            }
+            Files.createDirectories(blob.getParent());
+            try {
+                Files.move(temporary, blob, StandardCopyOption.ATOMIC_MOVE);
+            } catch(FileAlreadyExistsException exception) {
+                // The same content was stored concurrently
+            }
+            return blobId;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns the path of the given blob (which may not exist).
+     */
+    public Path resolve(String blobId) {
+        Matcher matcher = BLOB_ID.matcher(blobId);
+        if(!matcher.matches()) throw new IllegalArgumentException("Not a blob id: " + blobId);
+        String hash = matcher.group(1);
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(blobId);
+    }
+
+    /**
+     * Deletes every blob (and its derived files) which is not referenced anymore. The
+     * blobs modified within the grace period are kept, they may be about to be referenced.
+     * A blob is first moved out of place and checked again, so a concurrent store of the
+     * same content either touches it before (and it is moved back) or stores it again.
+     * The stray files older than the grace period (i.e. temporaries left by a crash while
+     * writing a derived file) are deleted as well.
+     *
+     * @param isReferenced tells whether a blob id is referenced, checked again once moved
+     * @param graceMillis the minimum age of a deleted blob
+     * @return the amount of deleted blobs
+     */
+    public int sweep(Predicate<String> isReferenced, long graceMillis) throws IOException {
+        long threshold = System.currentTimeMillis() - graceMillis;
+        Map<Path, List<Path>> filesByShard;
+        try(Stream<Path> files = Files.walk(root, 3)) {
+            filesByShard = files.filter(file -> !file.startsWith(temporaryDirectory))
+                    .filter(file -> root.relativize(file).getNameCount() == 3)
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.groupingBy(Path::getParent));
+        }
+        int deleted = 0;
+        for(List<Path> files : filesByShard.values()) {
+            for(Path file : files) {
+                String blobId = file.getFileName().toString();
+                if(!STORED_FILE.matcher(blobId).matches()) {
+                    if(Files.getLastModifiedTime(file).toMillis() <= threshold) Files.deleteIfExists(file);
+                    continue;
+                }
+                if(!isBlobId(blobId) || isReferenced.test(blobId)) continue;
+                if(Files.getLastModifiedTime(file).toMillis() > threshold) continue;
+                if(!sweep(file, blobId, isReferenced, threshold)) continue;
+                deleted++;
+                // The derived files are shared by the blobs with the same content (but another extension)
+                String hash = blobId.substring(0, 64);
+                boolean isHashStored = files.stream()
+                        .filter(other -> isBlobId(other.getFileName().toString()) && other.getFileName().toString().startsWith(hash))
+                        .anyMatch(Files::exists);
+                if(isHashStored) continue;
+                for(Path other : files) {
+                    Matcher matcher = STORED_FILE.matcher(other.getFileName().toString());
+                    if(matcher.matches() && matcher.group(1).equals(hash)) Files.deleteIfExists(other);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private boolean sweep(Path blob, String blobId, Predicate<String> isReferenced, long threshold) throws IOException {
+        Path swept = temporaryDirectory.resolve("swept-" + blobId);
+        try {
+            Files.move(blob, swept, StandardCopyOption.ATOMIC_MOVE);
+        } catch(NoSuchFileException exception) {
+            return false;
+        }
+        // Once moved nobody can touch it anymore, so both checks are final
+        boolean isStale = Files.getLastModifiedTime(swept).toMillis() <= threshold && !isReferenced.test(blobId);
+        if(isStale) {
+            Files.delete(swept);
+            return true;
+        }
+        try {
+            Files.move(swept, blob, StandardCopyOption.ATOMIC_MOVE);
+        } catch(FileAlreadyExistsException exception) {
+            // The same content was stored again meanwhile
+            Files.delete(swept);
+        }
+        return false;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+}
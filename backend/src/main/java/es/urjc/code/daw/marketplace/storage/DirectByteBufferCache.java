@@ -0,0 +1,113 @@
+package es.urjc.code.daw.marketplace.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A least recently used cache of file contents held in direct (off-heap) buffers, bounded
+ * by the total amount of cached bytes. Files larger than the maximum entry size are read
+ * but never cached. The cached buffers are handed out as read-only duplicates, so callers
+ * can consume them concurrently without copying the bytes into the heap.
+ */
+public class DirectByteBufferCache {
+
+    private final long capacityBytes;
+    private final long maxEntryBytes;
+    // In access order, so the eldest entry is the least recently used one
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public DirectByteBufferCache(long capacityBytes, long maxEntryBytes) {
+        this.capacityBytes = capacityBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, capacityBytes);
+    }
+
+    /**
+     * Returns the content of the given file, reading it only if it is not cached yet.
+     *
+     * @param key the key of the content, which must not change while it is cached
+     * @param file the file to be read on a miss
+     * @return a read-only buffer positioned at the start of the content
+     */
+    public ByteBuffer get(String key, Path file) throws IOException {
+        synchronized(this) {
+            ByteBuffer cached = entries.get(key);
+            if(cached != null) {
+                hits++;
+                return cached.asReadOnlyBuffer();
+            }
+            misses++;
+        }
+        // The file is read without holding the lock, a concurrent miss just reads it twice
+        ByteBuffer content = read(file, maxEntryBytes);
+        if(!content.isDirect()) return content.asReadOnlyBuffer();
+        synchronized(this) {
+            ByteBuffer previous = entries.put(key, content);
+            if(previous != null) sizeBytes -= previous.capacity();
+            sizeBytes += content.capacity();
+            evict();
+        }
+        return content.asReadOnlyBuffer();
+    }
+
+    public synchronized void invalidate(String key) {
+        ByteBuffer removed = entries.remove(key);
+        if(removed != null) sizeBytes -= removed.capacity();
+    }
+
+    /**
+     * Invalidates every entry whose key does not satisfy the given predicate.
+     */
+    public synchronized void retainAll(Predicate<String> isRetained) {
+        Iterator<Map.Entry<String, ByteBuffer>> iterator = entries.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<String, ByteBuffer> entry = iterator.next();
+            if(isRetained.test(entry.getKey())) continue;
+            sizeBytes -= entry.getValue().capacity();
+            iterator.remove();
+        }
+    }
+
+    public synchronized CacheStats getStats() {
+        return CacheStats.builder()
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .entries(entries.size())
+                .sizeBytes(sizeBytes)
+                .capacityBytes(capacityBytes)
+            .build();
+    }
+
+    private void evict() {
+        Iterator<ByteBuffer> iterator = entries.values().iterator();
+        while(sizeBytes > capacityBytes && iterator.hasNext()) {
+            // The native memory is released once the evicted buffer is collected
+            sizeBytes -= iterator.next().capacity();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static ByteBuffer read(Path file, long maxDirectBytes) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE) throw new IOException("The file is too large to be read: " + file);
+            // Uncacheable files are read into the heap, they would only churn the native memory
+            ByteBuffer content = size > maxDirectBytes ? ByteBuffer.allocate((int) size) : ByteBuffer.allocateDirect((int) size);
+            while(content.hasRemaining() && channel.read(content) >= 0);
+            return content.flip();
+        }
+    }
+
+}
@@ -47,4 +47,40 @@ public class EmailMessageFactory {
             .build();
     }
 
+    public static String newExpiryReminderTitle(Order order) {
+        return "#" + order.getId() + " Your service expires soon";
+    }
+
+    public static String newExpiryReminderMessage(Order order) {
+        return EmailContent.create()
+                .addHeading("Hi " + order.getUser().getFirstName() + ", your " + order.getProduct().getCategory() + " server is about to expire")
+                .addUnorderedList(
+                    "Here is your service information",
+                    Lists.newArrayList(
+                        "Order: #" + order.getId(),
+                        "Expiration date: " + order.getExpiryDate()
+                    )
+                )
+                .addHeading("Remember that you can renew it from my services page!")
+            .build();
+    }
+
+    public static String newExpiredTitle(Order order) {
+        return "#" + order.getId() + " Your service has expired";
+    }
+
+    public static String newExpiredMessage(Order order) {
+        return EmailContent.create()
+                .addHeading("Hi " + order.getUser().getFirstName() + ", your " + order.getProduct().getCategory() + " server has expired")
+                .addUnorderedList(
+                    "Here is your service information",
+                    Lists.newArrayList(
+                        "Order: #" + order.getId(),
+                        "Expiration date: " + order.getExpiryDate()
+                    )
+                )
+                .addHeading("You can still renew it from my services page!")
+            .build();
+    }
+
 }
@@ -0,0 +1,61 @@
+package es.urjc.code.daw.marketplace.util;
+
+import java.util.Locale;
+
+public class HardwareSpecs {
+
+    private static final String[] BYTE_UNITS = { "B", "KB", "MB", "GB", "TB", "PB" };
+
+    /**
+     * Parses an amount of bytes such as "4 GB" or "100 TB" (binary multiples). An
+     * amount without unit is taken as gigabytes.
+     *
+     * @throws IllegalArgumentException if the amount can not be parsed
+     */
+    public static long parseBytes(String value) {
+        String[] parts = split(value);
+        double amount = Double.parseDouble(parts[0]);
+        String unit = parts.length > 1 ? parts[1].toUpperCase(Locale.ROOT) : "GB";
+        for(int index = 0; index < BYTE_UNITS.length; index++) {
+            if(BYTE_UNITS[index].equals(unit)) return Math.round(amount * (1L << (10 * index)));
+        }
+        throw new IllegalArgumentException("Unknown byte unit: " + unit);
+    }
+
+    /**
+     * Parses an amount of virtual cores such as "2 vCPU".
+     *
+     * @throws IllegalArgumentException if the amount can not be parsed
+     */
+    public static int parseCores(String value) {
+        return Integer.parseInt(split(value)[0]);
+    }
+
+    /**
+     * Formats an amount of bytes with the largest unit that represents it exactly, i.e. "4 GB".
+     */
+    public static String formatBytes(long bytes) {
+        int unit = 0;
+        while(unit < BYTE_UNITS.length - 1 && bytes != 0 && bytes % 1024 == 0) {
+            bytes /= 1024;
+            unit++;
+        }
+        return bytes + " " + BYTE_UNITS[unit];
+    }
+
+    public static String formatCores(int cores) {
+        return cores + " vCPU";
+    }
+
+    private static String[] split(String value) {
+        if(value == null || value.isBlank()) throw new IllegalArgumentException("Empty hardware spec");
+        String[] parts = value.trim().split("\\s+");
+        try {
+            Double.parseDouble(parts[0]);
+        } catch(NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid hardware spec: " + value, exception);
+        }
+        return parts;
+    }
+
+}
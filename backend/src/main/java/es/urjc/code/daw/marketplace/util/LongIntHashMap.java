@@ -0,0 +1,109 @@
+package es.urjc.code.daw.marketplace.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to int values with open addressing and linear probing,
+ * which stores both in primitive arrays so there is no boxing at all. Keys can not be
+ * removed, which is all the counters built on top of it need.
+ *
+ * This class is not thread safe, callers are responsible for the synchronization.
+ */
+public class LongIntHashMap {
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of the given key, or 0 if it is not present.
+     */
+    public int get(long key) {
+        checkKey(key);
+        int slot = slotOf(key, keys);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    /**
+     * Adds the given delta to the value of the given key (0 if it is not present).
+     *
+     * @return the new value
+     */
+    public int addTo(long key, int delta) {
+        checkKey(key);
+        int slot = slotOf(key, keys);
+        if(keys[slot] != key) {
+            if(size + 1 > keys.length * LOAD_FACTOR) {
+                resize();
+                slot = slotOf(key, keys);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    /**
+     * Calls the given consumer with every entry of the map, in no particular order.
+     */
+    public void forEach(EntryConsumer consumer) {
+        for(int slot = 0; slot < keys.length; slot++) {
+            if(keys[slot] != EMPTY_KEY) consumer.accept(keys[slot], values[slot]);
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new int[oldValues.length << 1];
+        Arrays.fill(keys, EMPTY_KEY);
+        for(int slot = 0; slot < oldKeys.length; slot++) {
+            if(oldKeys[slot] == EMPTY_KEY) continue;
+            int newSlot = slotOf(oldKeys[slot], keys);
+            keys[newSlot] = oldKeys[slot];
+            values[newSlot] = oldValues[slot];
+        }
+    }
+
+    private static int slotOf(long key, long[] keys) {
+        int mask = keys.length - 1;
+        // Spread the bits so sequential ids do not end up in sequential slots
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while(keys[slot] != EMPTY_KEY && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private static void checkKey(long key) {
+        if(key == EMPTY_KEY) throw new IllegalArgumentException("The minimum long value can not be used as a key");
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        void accept(long key, int value);
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package es.urjc.code.daw.marketplace.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compressed bitmap of non-negative ids in the spirit of Roaring bitmaps. The ids
+ * are split by their high bits into chunks of 65536 values, each chunk is kept in a
+ * sorted array while sparse and switches to a plain bitmap once it becomes dense.
+ *
+ * This class is not thread safe, callers are responsible for the synchronization.
+ */
+public class RoaringBitmap {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    // Past this cardinality a sorted array of shorts takes more room than the bitmap
+    private static final int ARRAY_MAX_SIZE = 4096;
+
+    private final Map<Long, Container> containers = new HashMap<>();
+    private long cardinality;
+
+    /**
+     * Adds the given id to the bitmap.
+     *
+     * @return true if the id was not already present
+     */
+    public boolean add(long value) {
+        if(value < 0) throw new IllegalArgumentException("Only non-negative ids are supported");
+        long key = value >>> CHUNK_BITS;
+        int low = (int) (value & CHUNK_MASK);
+        Container container = containers.get(key);
+        if(container == null) {
+            container = new ArrayContainer();
+            containers.put(key, container);
+        }
+        if(container.contains(low)) return false;
+        containers.put(key, container.add(low));
+        cardinality++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if(value < 0) return false;
+        Container container = containers.get(value >>> CHUNK_BITS);
+        return container != null && container.contains((int) (value & CHUNK_MASK));
+    }
+
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    private interface Container {
+
+        boolean contains(int low);
+
+        // Returns the container holding the value, which may be a different (denser) one
+        Container add(int low);
+
+    }
+
+    private static final class ArrayContainer implements Container {
+
+        private char[] values = new char[4];
+        private int size;
+
+        @Override
+        public boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, size, (char) low) >= 0;
+        }
+
+        @Override
+        public Container add(int low) {
+            if(size == ARRAY_MAX_SIZE) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for(int i = 0; i < size; i++) bitmap.add(values[i]);
+                return bitmap.add(low);
+            }
+            int index = -Arrays.binarySearch(values, 0, size, (char) low) - 1;
+            if(size == values.length) values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_MAX_SIZE));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (char) low;
+            size++;
+            return this;
+        }
+
+    }
+
+    private static final class BitmapContainer implements Container {
+
+        private final long[] words = new long[(CHUNK_MASK + 1) / Long.SIZE];
+
+        @Override
+        public boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container add(int low) {
+            words[low >>> 6] |= 1L << low;
+            return this;
+        }
+
+    }
+
+}
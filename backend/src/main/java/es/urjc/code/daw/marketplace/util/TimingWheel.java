@@ -0,0 +1,171 @@
+package es.urjc.code.daw.marketplace.util;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel (in the spirit of the classic kernel timer wheel)
+ * which supports O(1) scheduling and cancellation of timeouts. Far away deadlines
+ * are kept in the upper levels and cascaded down as the wheel advances.
+ *
+ * This class is not thread safe, callers are responsible for the synchronization.
+ */
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Timeout<T>[][] levels;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long startMillis) {
+        if(tickMillis <= 0) throw new IllegalArgumentException("The tick duration must be positive");
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.levels = new Timeout[LEVELS][SLOTS];
+        for(int level = 0; level < LEVELS; level++) {
+            for(int slot = 0; slot < SLOTS; slot++) {
+                levels[level][slot] = Timeout.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Schedules the given payload to be expired once the wheel reaches the deadline.
+     *
+     * @param deadlineMillis the epoch millis at which the payload expires
+     * @param payload the payload to be handed out when expired
+     * @return the handle that allows cancelling the timeout
+     */
+    public Timeout<T> schedule(long deadlineMillis, T payload) {
+        Timeout<T> timeout = new Timeout<>(deadlineMillis / tickMillis, payload);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels the given timeout if it is still pending.
+     *
+     * @return true if the timeout was pending and has been cancelled
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if(timeout == null || !timeout.isPending()) return false;
+        timeout.unlink();
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel up to the given instant handing out every expired payload.
+     *
+     * @param nowMillis the current epoch millis
+     * @param expired the consumer that receives the expired payloads
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while(currentTick <= targetTick) {
+            int index = (int) (currentTick & SLOT_MASK);
+            // Cascade the upper levels when the lower one completes a full rotation
+            int level = 1;
+            while(index == 0 && level < LEVELS) {
+                index = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                cascade(levels[level][index]);
+                level++;
+            }
+            Timeout<T> bucket = levels[0][(int) (currentTick & SLOT_MASK)];
+            while(bucket.next != bucket) {
+                Timeout<T> timeout = bucket.next;
+                timeout.unlink();
+                if(timeout.deadlineTick > currentTick) {
+                    // Deadlines beyond the wheel capacity are clamped so they may come back early
+                    place(timeout);
+                    continue;
+                }
+                size--;
+                expired.accept(timeout.payload);
+            }
+            currentTick++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void cascade(Timeout<T> bucket) {
+        while(bucket.next != bucket) {
+            Timeout<T> timeout = bucket.next;
+            timeout.unlink();
+            place(timeout);
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long ticks = timeout.deadlineTick - currentTick;
+        long deadlineTick = timeout.deadlineTick;
+        if(ticks < 0) {
+            ticks = 0;
+            deadlineTick = currentTick;
+        } else if(ticks > MAX_TICKS) {
+            ticks = MAX_TICKS;
+            deadlineTick = currentTick + MAX_TICKS;
+        }
+        int level = 0;
+        while(level < LEVELS - 1 && ticks >= (1L << (SLOT_BITS * (level + 1)))) level++;
+        int slot = (int) ((deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        timeout.linkBefore(levels[level][slot]);
+    }
+
+    /**
+     * A handle to a scheduled payload, linked into one of the wheel buckets.
+     */
+    public static final class Timeout<T> {
+
+        private final long deadlineTick;
+        private final T payload;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(long deadlineTick, T payload) {
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+        }
+
+        private static <T> Timeout<T> sentinel() {
+            Timeout<T> sentinel = new Timeout<>(Long.MIN_VALUE, null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public boolean isPending() {
+            return next != null;
+        }
+
+        private void linkBefore(Timeout<T> sentinel) {
+            prev = sentinel.prev;
+            next = sentinel;
+            sentinel.prev.next = this;
+            sentinel.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,39 @@
+package es.urjc.code.daw.marketplace.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtils {
+
+    /**
+     * Runs the given action once the current transaction commits (it is discarded on
+     * rollback), or right away if there is no transaction in progress.
+     */
+    public static void afterCommit(Runnable action) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Runs the given action once the current transaction rolls back, or never if there
+     * is no transaction in progress.
+     */
+    public static void afterRollback(Runnable action) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status == STATUS_ROLLED_BACK) action.run();
+            }
+        });
+    }
+
+}
@@ -5,7 +5,9 @@ import es.urjc.code.daw.marketplace.domain.Order;
 import es.urjc.code.daw.marketplace.domain.Product;
 import es.urjc.code.daw.marketplace.domain.User;
 import es.urjc.code.daw.marketplace.repository.OrderRepository;
+import es.urjc.code.daw.marketplace.repository.OrderViewRepository;
 import es.urjc.code.daw.marketplace.repository.ProductRepository;
+import es.urjc.code.daw.marketplace.repository.UserProductPurchasesRepository;
 import es.urjc.code.daw.marketplace.repository.UserRepository;
 import es.urjc.code.daw.marketplace.security.SecurityProperties;
 import es.urjc.code.daw.marketplace.util.TimeUtils;
@@ -23,15 +25,21 @@ public class OrderBootstrap implements CommandLineRunner {
 
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final UserProductPurchasesRepository userProductPurchasesRepository;
     private final UserRepository userRepository;
     private final SecurityProperties securityProperties;
 
     public OrderBootstrap(ProductRepository productRepository,
                           OrderRepository orderRepository,
+                          OrderViewRepository orderViewRepository,
+                          UserProductPurchasesRepository userProductPurchasesRepository,
                           UserRepository userRepository,
                           SecurityProperties securityProperties) {
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
+        this.orderViewRepository = orderViewRepository;
+        this.userProductPurchasesRepository = userProductPurchasesRepository;
         this.userRepository = userRepository;
         this.securityProperties = securityProperties;
     }
@@ -67,6 +75,8 @@ public class OrderBootstrap implements CommandLineRunner {
         }
 
         orderRepository.saveAll(orders);
+        orderViewRepository.backfill();
+        userProductPurchasesRepository.backfill();
     }
 
     public static Date pseudoRandomDate(List<Date> items) {
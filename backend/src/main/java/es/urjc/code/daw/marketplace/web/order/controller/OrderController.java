@@ -2,18 +2,19 @@ package es.urjc.code.daw.marketplace.web.order.controller;
 
 import com.google.common.collect.Lists;
 import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.OrderView;
 import es.urjc.code.daw.marketplace.domain.Product;
 import es.urjc.code.daw.marketplace.domain.User;
 import es.urjc.code.daw.marketplace.security.user.UserPrincipal;
 import es.urjc.code.daw.marketplace.service.*;
 import es.urjc.code.daw.marketplace.util.EmailContent;
+import es.urjc.code.daw.marketplace.util.TimeUtils;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import java.util.Calendar;
 import javax.servlet.http.HttpServletResponse;
 import java.util.Date;
 import java.util.List;
@@ -27,18 +28,21 @@ public class OrderController {
     private final SaleService saleService;
     private final ProductService productService;
     private final PdfExporterService pdfExporterService;
+    private final ProductPriceService productPriceService;
 
     public OrderController(OrderService orderService,
                            UserService userService,
                            SaleService saleService,
                            EmailService emailService,
-                           ProductService productService, PdfExporterService pdfExporterService) {
+                           ProductService productService, PdfExporterService pdfExporterService,
+                           ProductPriceService productPriceService) {
         this.orderService = orderService;
         this.userService = userService;
         this.emailService = emailService;
         this.saleService = saleService;
         this.productService = productService;
         this.pdfExporterService = pdfExporterService;
+        this.productPriceService = productPriceService;
     }
 
     @PreAuthorize("hasAnyRole('ROLE_CLIENT', 'ROLE_ADMIN')")
@@ -128,7 +132,7 @@ public class OrderController {
                              Model model) {
 
         User currentUser = userService.findUserByEmail(userPrincipal.getUsername());
-        List<Order> orders = orderService.findAllOrdersByUserId(currentUser.getId(), PageRequest.of(page - 1, amount));
+        List<OrderView> orders = orderService.findOrderViewsByUserId(currentUser.getId(), PageRequest.of(page - 1, amount));
 
         model.addAttribute("orders", orders);
 
@@ -143,14 +147,16 @@ public class OrderController {
         User currentUser = userService.findUserByEmail(userPrincipal.getUsername());
         Product product = productService.findProductById(productId);
 
+        Date now = TimeUtils.now();
+        int price = productPriceService.priceAt(product, now);
         Order order = Order.builder()
                 .product(product)
-                .finalCost(product.getPrice())
+                .finalCost(price)
                 .user(currentUser)
+                .creationDate(now)
                 .build();
 
-        saleService.applyOtdDiscount(order);
-        saleService.applyAdDiscount(order);
+        saleService.applyDiscounts(order);
 
         Order savedOrder = orderService.saveOrder(order);
 
@@ -159,7 +165,7 @@ public class OrderController {
                 .addUnorderedList(
                         "Here is your purchased product information",
                         Lists.newArrayList(
-                                "Price: " + product.getPrice(),
+                                "Price: " + price,
                                 "Ram: " + product.getRam(),
                                 "Cores: " + product.getCores(),
                                 "Storage: " + product.getStorage(),
@@ -186,14 +192,7 @@ public class OrderController {
             return "redirect:/error";
         }
 
-        order.setFinalCost(order.getFinalCost() + order.getProduct().getPrice());
-
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(new Date().after(order.getExpiryDate()) ? new Date() : order.getExpiryDate());
-        calendar.add(Calendar.MONTH, 1);
-        order.setExpiryDate(calendar.getTime());
-
-        orderService.saveOrder(order);
+        orderService.renewOrders(List.of(orderId), null, 1);
 
         return "redirect:/service/" + orderId;
     }
@@ -210,9 +209,7 @@ public class OrderController {
             return "redirect:/error";
         }
 
-        order.setExpiryDate(new Date());
-
-        orderService.saveOrder(order);
+        orderService.cancelOrders(List.of(orderId), null);
 
         return "redirect:/service/" + orderId;
     }
@@ -0,0 +1,66 @@
+package es.urjc.code.daw.marketplace.web.product.bootstrap;
+
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.repository.OrderViewRepository;
+import es.urjc.code.daw.marketplace.repository.ProductRepository;
+import es.urjc.code.daw.marketplace.util.HardwareSpecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Populates the numeric hardware specs of the products stored before they existed,
+ * parsing them from the display strings. Products that can not be parsed are
+ * logged and left untouched, and the order listings of the migrated ones are
+ * refreshed with the normalized display strings.
+ */
+@Component
+@Transactional
+@org.springframework.core.annotation.Order(5)
+public class ProductSpecsMigration implements CommandLineRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSpecsMigration.class);
+
+    private final ProductRepository productRepository;
+    private final OrderViewRepository orderViewRepository;
+
+    public ProductSpecsMigration(ProductRepository productRepository,
+                                 OrderViewRepository orderViewRepository) {
+        this.productRepository = productRepository;
+        this.orderViewRepository = orderViewRepository;
+    }
+
+    @Override
+    public void run(String... args) {
+        List<Product> products = productRepository.findAllWithoutNumericSpecs();
+        List<Product> migrated = new ArrayList<>(products.size());
+        List<Long> migratedIds = new ArrayList<>(products.size());
+        for(Product product : products) {
+            try {
+                // Every spec is parsed before any is assigned, so a rejected product is never left dirty
+                long ramBytes = product.getRamBytes() != null ? product.getRamBytes() : HardwareSpecs.parseBytes(product.getRam());
+                int coreCount = product.getCoreCount() != null ? product.getCoreCount() : HardwareSpecs.parseCores(product.getCores());
+                long storageBytes = product.getStorageBytes() != null ? product.getStorageBytes() : HardwareSpecs.parseBytes(product.getStorage());
+                long transferBytes = product.getTransferBytes() != null ? product.getTransferBytes() : HardwareSpecs.parseBytes(product.getTransfer());
+                product.setRamBytes(ramBytes);
+                product.setCoreCount(coreCount);
+                product.setStorageBytes(storageBytes);
+                product.setTransferBytes(transferBytes);
+                migrated.add(product);
+                migratedIds.add(product.getId());
+            } catch(IllegalArgumentException exception) {
+                final String loggerMsg = String.format("[ProductSpecsMigration] Could not parse the specs of product %d: %s", product.getId(), exception.getLocalizedMessage());
+                LOGGER.error(loggerMsg);
+            }
+        }
+        productRepository.saveAll(migrated);
+        if(!migratedIds.isEmpty()) orderViewRepository.refreshProductDetailsOf(migratedIds);
+        final String loggerMsg = String.format("[ProductSpecsMigration] Migrated the specs of %d products", migrated.size());
+        LOGGER.info(loggerMsg);
+    }
+
+}
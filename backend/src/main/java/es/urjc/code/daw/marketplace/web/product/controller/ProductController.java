@@ -4,6 +4,7 @@ import es.urjc.code.daw.marketplace.domain.AccumulativeDiscount;
 import es.urjc.code.daw.marketplace.domain.OneTimeDiscount;
 import es.urjc.code.daw.marketplace.domain.Product;
 import es.urjc.code.daw.marketplace.security.user.UserPrincipal;
+import es.urjc.code.daw.marketplace.service.ActiveDiscounts;
 import es.urjc.code.daw.marketplace.service.ProductService;
 import es.urjc.code.daw.marketplace.service.SaleService;
 import es.urjc.code.daw.marketplace.service.UserService;
@@ -42,16 +43,18 @@ public class ProductController {
         List<Product> products = productService.findAllProducts();
         model.addAttribute("products", products);
 
-        Optional<OneTimeDiscount> oneTimeDiscount = saleService.getCurrentOtd();
+        ActiveDiscounts activeDiscounts = saleService.getActiveDiscounts();
+
+        Optional<OneTimeDiscount> oneTimeDiscount = activeDiscounts.getOtd();
         oneTimeDiscount.ifPresent(otd -> {
             model.addAttribute("otd", otd);
-            model.addAttribute("otdProduct", productService.findProductById(otd.getProductId()));
+            model.addAttribute("otdProduct", activeDiscounts.getOtdProduct().orElseThrow());
         });
 
-        Optional<AccumulativeDiscount> accumulativeDiscount = saleService.getCurrentAd();
+        Optional<AccumulativeDiscount> accumulativeDiscount = activeDiscounts.getAd();
         accumulativeDiscount.ifPresent(ad -> {
             model.addAttribute("ad", ad);
-            model.addAttribute("adProduct", productService.findProductById(ad.getProductId()));
+            model.addAttribute("adProduct", activeDiscounts.getAdProduct().orElseThrow());
         });
 
         if(oneTimeDiscount.isPresent() || accumulativeDiscount.isPresent()) {
@@ -5,13 +5,13 @@ import es.urjc.code.daw.marketplace.domain.User;
 import es.urjc.code.daw.marketplace.security.user.UserPrincipal;
 import es.urjc.code.daw.marketplace.service.EmailService;
 import es.urjc.code.daw.marketplace.service.PictureService;
+import es.urjc.code.daw.marketplace.service.StoredPicture;
 import es.urjc.code.daw.marketplace.service.UserService;
 import es.urjc.code.daw.marketplace.util.EmailContent;
 import es.urjc.code.daw.marketplace.web.user.dto.RegisterUserRequestDto;
 import es.urjc.code.daw.marketplace.web.user.dto.UpdateUserRequestDto;
 import es.urjc.code.daw.marketplace.web.user.mapper.UserMapper;
 import io.swagger.v3.oas.annotations.Operation;
-import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
@@ -21,9 +21,10 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.Objects;
 
@@ -237,19 +238,25 @@ public class UserController {
 
     @Operation(hidden = true)
     @PreAuthorize("hasAnyRole('ROLE_CLIENT', 'ROLE_ADMIN')")
-    @ResponseBody
     @GetMapping(path = "/user-profile-pictures/{id}",
                 produces = { MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE })
-    public byte[] getImage(@PathVariable("id") Long userId,
-                           @AuthenticationPrincipal UserPrincipal userPrincipal) throws Exception {
+    public void getImage(@PathVariable("id") Long userId,
+                         @AuthenticationPrincipal UserPrincipal userPrincipal,
+                         HttpServletResponse response) throws Exception {
         User currentUser = userService.findUserByEmail(userPrincipal.getUsername());
         boolean cannotPerform = !currentUser.isAdmin() && currentUser.getId().longValue() != userId.longValue();
         if(cannotPerform) throw new RuntimeException("Access denied");
 
         User toLoad = userService.findUserById(userId);
-        File file = new File("user-profile-pictures/" + toLoad.getProfilePictureFilename());
-        InputStream targetStream = new FileInputStream(file);
-        return IOUtils.toByteArray(targetStream);
+        StoredPicture picture = pictureService.findPicture(toLoad, null)
+                .orElseThrow(() -> new RuntimeException("The user has no picture"));
+        ByteBuffer content = pictureService.readPicture(toLoad)
+                .orElseThrow(() -> new RuntimeException("The user has no picture"));
+        // The (usually cached) picture is written as is, without copying it into the heap
+        response.setContentType(picture.getContentType());
+        response.setContentLength(content.remaining());
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        while(content.hasRemaining()) channel.write(content);
     }
 
 }
@@ -0,0 +1,84 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.repository.OrderRepository;
+import es.urjc.code.daw.marketplace.repository.ProductRepository;
+import es.urjc.code.daw.marketplace.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class OrderRenewalConcurrencyTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderRenewalConcurrencyTests.class);
+
+    private static final int THREADS = 16;
+    private static final int RENEWALS_PER_THREAD = 25;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void concurrentRenewalsAreNotLost() throws Exception {
+        Product product = productRepository.findAll().get(0);
+        User user = userRepository.findAll().get(0);
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.MONTH, 1);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Order order = orderRepository.saveAndFlush(Order.builder()
+                .product(product)
+                .user(user)
+                .finalCost(product.getPrice())
+                .expiryDate(calendar.getTime())
+            .build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new LinkedList<>();
+        for(int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for(int renewal = 0; renewal < RENEWALS_PER_THREAD; renewal++) {
+                    orderService.renewOrders(List.of(order.getId()), null, 1);
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for(Future<?> future : futures) future.get();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        int renewals = THREADS * RENEWALS_PER_THREAD;
+        Order renewed = orderRepository.findById(order.getId()).orElseThrow();
+        calendar.add(Calendar.MONTH, renewals);
+        assertEquals(product.getPrice() * (renewals + 1), renewed.getFinalCost());
+        assertEquals(calendar.getTime().getTime(), renewed.getExpiryDate().getTime());
+
+        double throughput = renewals / (elapsedNanos / 1_000_000_000d);
+        final String loggerMsg = String.format("[OrderRenewalConcurrencyTests] %d renewals by %d threads in %d ms (%.1f renewals/s)",
+                renewals, THREADS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), throughput);
+        LOGGER.info(loggerMsg);
+    }
+
+}
@@ -0,0 +1,110 @@
+package es.urjc.code.daw.marketplace.service;
+
+import es.urjc.code.daw.marketplace.domain.OneTimeDiscount;
+import es.urjc.code.daw.marketplace.domain.Order;
+import es.urjc.code.daw.marketplace.domain.Product;
+import es.urjc.code.daw.marketplace.domain.User;
+import es.urjc.code.daw.marketplace.repository.OtdRepository;
+import es.urjc.code.daw.marketplace.repository.ProductRepository;
+import es.urjc.code.daw.marketplace.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class OtdRedemptionConcurrencyTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OtdRedemptionConcurrencyTests.class);
+
+    private static final int THREADS = 16;
+    private static final int USERS = 50;
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private OtdRepository otdRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void concurrentRedemptionsHappenExactlyOnce() throws Exception {
+        // A brand new product, so no user has purchased it yet
+        Product product = productRepository.saveAndFlush(Product.builder()
+                .category("basic")
+                .price(100)
+                .ram("1 GB")
+                .cores("1 vCPU")
+                .storage("25 GB")
+                .transfer("1 TB")
+            .build());
+        OneTimeDiscount otd = saleService.updateCurrentOtd(OneTimeDiscount.builder()
+                .productId(product.getId())
+                .discountPercentage(50)
+                .start(new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1)))
+                .stop(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+            .build());
+        List<User> users = new ArrayList<>(USERS);
+        String suffix = UUID.randomUUID().toString();
+        for(int index = 0; index < USERS; index++) {
+            users.add(userRepository.saveAndFlush(User.builder()
+                    .firstName("Redemption")
+                    .surname("Tester")
+                    .address("Test address")
+                    .email("redemption-" + index + "-" + suffix + "@test.com")
+                    .password("password")
+                .build()));
+        }
+
+        // Every thread tries to redeem the discount for every user
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicIntegerArray redemptions = new AtomicIntegerArray(USERS);
+        List<Future<?>> futures = new LinkedList<>();
+        for(int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for(int index = 0; index < USERS; index++) {
+                    Order order = Order.builder()
+                            .product(product)
+                            .user(users.get(index))
+                            .finalCost(product.getPrice())
+                        .build();
+                    saleService.applyDiscounts(order);
+                    if(order.getFinalCost() < product.getPrice()) redemptions.incrementAndGet(index);
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for(Future<?> future : futures) future.get();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        for(int index = 0; index < USERS; index++) {
+            assertEquals(1, redemptions.get(index));
+        }
+        assertEquals(USERS, otdRepository.findConsumerIds(otd.getId()).size());
+
+        int attempts = THREADS * USERS;
+        double throughput = attempts / (elapsedNanos / 1_000_000_000d);
+        final String loggerMsg = String.format("[OtdRedemptionConcurrencyTests] %d redemption attempts by %d threads in %d ms (%.1f attempts/s)",
+                attempts, THREADS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), throughput);
+        LOGGER.info(loggerMsg);
+
+        saleService.disableCurrentOtd();
+    }
+
+}
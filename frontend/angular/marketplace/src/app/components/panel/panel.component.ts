@@ -84,11 +84,17 @@ export class PanelComponent implements OnInit {
       if (response instanceof Error) { return; }
       for (const user of response) {
         this.loadedUsers.push(user);
+        this.loadPicture(user);
       }
       this.currentPage++;
     });
   }
 
+  loadPicture(user: User): void {
+    if (user.pictureUrl === '') { return; }
+    this.userService.loadPicture(user, 64).subscribe((picture) => { user.encodedImage = picture; }, () => {});
+  }
+
   loadSales(): void {
     this.saleService.findSale('onetime').subscribe((response) => {
       if (response instanceof Error) { return; }
@@ -115,6 +121,7 @@ export class PanelComponent implements OnInit {
     const observable = this.userService.enableUser(user.id);
     observable.subscribe((response) => {
       if (response instanceof Error) { return; }
+      response.encodedImage = user.encodedImage;
       this.loadedUsers[userIndex] = response;
       this.clientEnabledMessage = `The user ${user.firstName} ${user.surname} account has been enabled!`;
       this.clientDisabledMessage = '';
@@ -125,6 +132,7 @@ export class PanelComponent implements OnInit {
     const observable = this.userService.disableUser(user.id);
     observable.subscribe((response) => {
       if (response instanceof Error) { return; }
+      response.encodedImage = user.encodedImage;
       this.loadedUsers[userIndex] = response;
       this.clientDisabledMessage = `The user ${user.firstName} ${user.surname} account has been disabled!`;
       this.clientEnabledMessage = '';
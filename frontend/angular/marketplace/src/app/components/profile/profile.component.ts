@@ -35,7 +35,7 @@ export class ProfileComponent implements OnInit {
         }
       }
       userId = Number(userId);
-      const observable = userService.findUser(userId);
+      const observable = userService.findUser(userId, true);
       observable.subscribe(
         (user: User) => {
           user.id = userId;
@@ -21,9 +21,10 @@ export class UserMapper {
       item.address,
       item.email,
       item.enabled,
-      item.encoded_image,
+      item.encoded_image || '',
       item.is_admin,
-      ''
+      '',
+      item.picture_url || ''
     );
   }
 
@@ -9,7 +9,8 @@ export class User {
     public enabled: boolean = true,
     public encodedImage: string = '',
     public isAdmin: boolean = false,
-    public password: string = ''
+    public password: string = '',
+    public pictureUrl: string = ''
   ) {}
 
   hasProfilePicture(): boolean {
@@ -22,8 +22,8 @@ export class UserService {
     private userMapper: UserMapper
   ) { }
 
-  findUser(userId: number): Observable<User> {
-    const ROUTE = `${this.BASE_ROUTE}/${userId}`;
+  findUser(userId: number, withEncodedImage: boolean = false): Observable<User> {
+    const ROUTE = `${this.BASE_ROUTE}/${userId}` + (withEncodedImage ? '?encodedImage=true' : '');
     return new Observable<User>((subscriber: Subscriber<User>) => {
       const requestOptions = { headers: new HttpHeaders({ Authorization: this.tokenService.getToken() }) };
       this.httpClient.get<any>(ROUTE, requestOptions)
@@ -100,7 +100,7 @@ export class UserService {
   }
 
   saveUser(user: User): Observable<User> {
-    const ROUTE = `${this.BASE_ROUTE}/${user.id}`;
+    const ROUTE = `${this.BASE_ROUTE}/${user.id}?encodedImage=true`;
     return new Observable<User>((subscriber: Subscriber<User>) => {
       const requestBody = this.userMapper.asSaveRequest(user);
       console.log(requestBody);
@@ -119,6 +119,27 @@ export class UserService {
     });
   }
 
+  /**
+   * Fetches the picture of the given user (through the browser cache) as a data url.
+   * @param user the user whose picture is fetched
+   * @param size the size hint in pixels, so a thumbnail is fetched instead of the original
+   */
+  loadPicture(user: User, size?: number): Observable<string> {
+    const ROUTE = `${Constants.BASE_URL}${user.pictureUrl}` + (size ? `?size=${size}` : '');
+    return new Observable<string>((subscriber: Subscriber<string>) => {
+      const headers = new HttpHeaders({ Authorization: this.tokenService.getToken() });
+      this.httpClient.get(ROUTE, { headers, responseType: 'blob' })
+        .subscribe(
+          (picture) => {
+            const reader = new FileReader();
+            reader.onload = () => subscriber.next(reader.result as string);
+            reader.readAsDataURL(picture);
+          },
+          (errorResponse) => subscriber.error(Error.from(errorResponse))
+        );
+    });
+  }
+
   registerUser(registerUser: User): Observable<boolean> {
     return new Observable<boolean>((subscriber: Subscriber<boolean>) => {
       const registerRequest = this.userMapper.asRegisterRequest(registerUser);